@@ -0,0 +1,49 @@
+package np.com.grishma.fingerprintmanagerdemo;
+
+import android.app.Application;
+import android.content.Context;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.NonceSource;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.PublicKeyEnrollment;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+
+/**
+ * Holds the state that outlives activities and dialogs: the fake backend, whose replay cache must
+ * see every transaction of the process, the enrollment of the public key with it and the source of
+ * the client nonces, which must not repeat within the process.
+ */
+public class FingerprintManagerDemoApplication extends Application {
+
+    private StoreBackend storeBackend;
+    private PublicKeyEnrollment publicKeyEnrollment;
+    private NonceSource nonceSource;
+
+    public static FingerprintManagerDemoApplication get(Context context) {
+        return (FingerprintManagerDemoApplication) context.getApplicationContext();
+    }
+
+    /**
+     * @return the backend of the app, created on first use.
+     */
+    public synchronized StoreBackend getStoreBackend() {
+        if (storeBackend == null) {
+            storeBackend = new StoreBackendImpl();
+        }
+        return storeBackend;
+    }
+
+    public synchronized PublicKeyEnrollment getPublicKeyEnrollment() {
+        if (publicKeyEnrollment == null) {
+            publicKeyEnrollment = new PublicKeyEnrollment(getStoreBackend());
+        }
+        return publicKeyEnrollment;
+    }
+
+    public synchronized NonceSource getNonceSource() {
+        if (nonceSource == null) {
+            nonceSource = new NonceSource();
+        }
+        return nonceSource;
+    }
+}
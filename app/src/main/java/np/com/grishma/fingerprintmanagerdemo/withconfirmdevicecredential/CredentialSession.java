@@ -0,0 +1,160 @@
+package np.com.grishma.fingerprintmanagerdemo.withconfirmdevicecredential;
+
+import android.os.SystemClock;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyPermanentlyInvalidatedException;
+import android.security.keystore.KeyProperties;
+import android.security.keystore.UserNotAuthenticatedException;
+
+import java.io.IOException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.CertificateException;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.KeyGenerator;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+
+/**
+ * Holds a symmetric key in the AndroidKeyStore that can only be used for a number of seconds after
+ * the user has authenticated with device credentials, together with a {@link Cipher} for it.
+ * <p>
+ * The key and the cipher are loaded once and reused for every encryption; they are only replaced
+ * when the key has been permanently invalidated. The session also tracks the validity window
+ * opened by {@link #onAuthenticated()} itself, so once the window has passed
+ * {@link #isAuthenticationExpired()} tells the caller to ask for the credentials again without
+ * trying the key first. Before the first authentication of the session the window is unknown, the
+ * user may have unlocked the device recently, and the key is simply tried.
+ */
+class CredentialSession {
+
+    private static final String KEY_STORE = "AndroidKeyStore";
+    private static final String TRANSFORMATION = KeyProperties.KEY_ALGORITHM_AES + "/"
+            + KeyProperties.BLOCK_MODE_CBC + "/" + KeyProperties.ENCRYPTION_PADDING_PKCS7;
+    /** The value of {@link #authenticatedUntil} while the validity window is unknown */
+    private static final long UNKNOWN = -1;
+
+    private final String keyName;
+    private final int validitySeconds;
+    private SecretKey secretKey;
+    private Cipher cipher;
+    /** The end of the validity window in {@link SystemClock#elapsedRealtime()} milliseconds */
+    private long authenticatedUntil = UNKNOWN;
+
+    /**
+     * @param keyName         the alias of the key in the AndroidKeyStore
+     * @param validitySeconds the number of seconds the key can be used after the user has
+     *                        authenticated
+     */
+    CredentialSession(String keyName, int validitySeconds) {
+        this.keyName = keyName;
+        this.validitySeconds = validitySeconds;
+    }
+
+    /**
+     * Loads the key from the AndroidKeyStore, or creates it if there is none. Does nothing if the
+     * key has been loaded already.
+     */
+    void loadKey() {
+        if (secretKey != null) {
+            return;
+        }
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEY_STORE);
+            keyStore.load(null);
+            secretKey = (SecretKey) keyStore.getKey(keyName, null);
+            if (secretKey == null) {
+                secretKey = generateKey();
+            }
+            cipher = Cipher.getInstance(TRANSFORMATION);
+        } catch (KeyStoreException | CertificateException | UnrecoverableKeyException
+                | IOException | NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new RuntimeException("Failed to load the symmetric key", e);
+        }
+    }
+
+    /**
+     * Creates a symmetric key in the AndroidKeyStore which can only be used after the user has
+     * authenticated with device credentials within the last {@link #validitySeconds} seconds.
+     * An existing key of the same alias is replaced.
+     */
+    private SecretKey generateKey() {
+        // Generate a key to decrypt payment credentials, tokens, etc.
+        // This will most likely be a registration step for the user when they are setting up your app.
+        try {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(
+                    KeyProperties.KEY_ALGORITHM_AES, KEY_STORE);
+
+            // Set the alias of the entry in Android KeyStore where the key will appear
+            // and the constrains (purposes) in the constructor of the Builder
+            keyGenerator.init(new KeyGenParameterSpec.Builder(keyName,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_CBC)
+                    // Require the user to authenticate the key before using it
+                    .setUserAuthenticationRequired(true)
+                    // Require that the user has unlocked in the last N seconds
+                    // If the user has unlocked the device within the last this number of seconds,
+                    // it can be considered as an authenticator.
+                    .setUserAuthenticationValidityDurationSeconds(validitySeconds)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_PKCS7)
+                    .build());
+            return keyGenerator.generateKey();
+        } catch (NoSuchAlgorithmException | NoSuchProviderException
+                | InvalidAlgorithmParameterException e) {
+            throw new RuntimeException("Failed to create a symmetric key", e);
+        }
+    }
+
+    /**
+     * @return true if the validity window opened by the last {@link #onAuthenticated()} has
+     * passed, so the user must authenticate before the key can be used. False if the window is
+     * still open or unknown.
+     */
+    boolean isAuthenticationExpired() {
+        return authenticatedUntil != UNKNOWN
+                && SystemClock.elapsedRealtime() >= authenticatedUntil;
+    }
+
+    /**
+     * Opens the validity window, to be called once the user has confirmed the device credentials.
+     */
+    void onAuthenticated() {
+        authenticatedUntil = SystemClock.elapsedRealtime() + validitySeconds * 1000L;
+    }
+
+    /**
+     * Encrypts the data with the key, which is loaded first if needed.
+     *
+     * @throws UserNotAuthenticatedException      if the user hasn't authenticated recently enough,
+     *                                            the window is then known to have expired
+     * @throws KeyPermanentlyInvalidatedException if the lock screen has been disabled or reset
+     *                                            after the key was created. The key is replaced by
+     *                                            a new one, the user has to authenticate for it.
+     */
+    byte[] encrypt(byte[] data) throws UserNotAuthenticatedException,
+            KeyPermanentlyInvalidatedException {
+        loadKey();
+        try {
+            // A new IV is picked on every init, so the cipher is initialized for every message.
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            return cipher.doFinal(data);
+        } catch (UserNotAuthenticatedException e) {
+            authenticatedUntil = 0;
+            throw e;
+        } catch (KeyPermanentlyInvalidatedException e) {
+            secretKey = generateKey();
+            authenticatedUntil = 0;
+            throw e;
+        } catch (InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
+            throw new RuntimeException("Failed to encrypt", e);
+        }
+    }
+}
@@ -4,32 +4,13 @@ import android.app.KeyguardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyPermanentlyInvalidatedException;
-import android.security.keystore.KeyProperties;
 import android.security.keystore.UserNotAuthenticatedException;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
 
-import java.io.IOException;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.KeyGenerator;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.SecretKey;
-
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
@@ -53,9 +34,7 @@ public class FingerprintWithConfirmCredentialActivity extends AppCompatActivity
     Button purchaseButton;
 
     private KeyguardManager keyguardManager;
-    private KeyStore keyStore;
-    private Cipher cipher;
-    private SecretKey secretKey;
+    private CredentialSession credentialSession;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +43,7 @@ public class FingerprintWithConfirmCredentialActivity extends AppCompatActivity
         ButterKnife.bind(this);
 
         keyguardManager = (KeyguardManager) getSystemService(Context.KEYGUARD_SERVICE);
+        credentialSession = new CredentialSession(KEY_NAME, AUTHENTICATION_DURATION_SECONDS);
 
         // Check if the user has set up a lock screen
         if (!keyguardManager.isKeyguardSecure()) {
@@ -76,41 +56,8 @@ public class FingerprintWithConfirmCredentialActivity extends AppCompatActivity
             return;
         }
 
-        generateKey();
-    }
-
-    /**
-     * Creates a symmetric key in the AndroidKeyStore which can only be used after the user has
-     * authenticated with device credentials within the last N seconds.
-     */
-    private void generateKey() {
-        // Generate a key to decrypt payment credentials, tokens, etc.
-        // This will most likely be a registration step for the user when they are setting up your app.
-        try {
-            keyStore = KeyStore.getInstance("AndroidKeyStore");
-            keyStore.load(null);
-            KeyGenerator keyGenerator = KeyGenerator.getInstance(
-                    KeyProperties.KEY_ALGORITHM_AES, "AndroidKeyStore");
-
-            // Set the alias of the entry in Android KeyStore where the key will appear
-            // and the constrains (purposes) in the constructor of the Builder
-            keyGenerator.init(new KeyGenParameterSpec.Builder(KEY_NAME,
-                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
-                    .setBlockModes(KeyProperties.BLOCK_MODE_CBC)
-                    // Require the user to authenticate the key before using it
-                    .setUserAuthenticationRequired(true)
-                    // Require that the user has unlocked in the last N seconds
-                    // If the user has unlocked the device within the last this number of seconds,
-                    // it can be considered as an authenticator.
-                    .setUserAuthenticationValidityDurationSeconds(AUTHENTICATION_DURATION_SECONDS)
-                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_PKCS7)
-                    .build());
-            keyGenerator.generateKey();
-        } catch (NoSuchAlgorithmException | NoSuchProviderException
-                | InvalidAlgorithmParameterException | KeyStoreException
-                | CertificateException | IOException e) {
-            throw new RuntimeException("Failed to create a symmetric key", e);
-        }
+        // Create the key unless it exists already, and keep it for the purchases.
+        credentialSession.loadKey();
     }
 
     /**
@@ -129,25 +76,17 @@ public class FingerprintWithConfirmCredentialActivity extends AppCompatActivity
      * @return {@link boolean} value, true if data encryption was a success, otherwise false
      */
     private boolean encryptData() {
+        // Skip the key if the validity window is known to be over, the user must authenticate first
+        if (credentialSession.isAuthenticationExpired()) {
+            showAuthenticationScreen();
+            return false;
+        }
 
         try {
-            // get instance of AndroidKeyStore and load it
-            keyStore = KeyStore.getInstance("AndroidKeyStore");
-            keyStore.load(null);
-
-            // fetch the secretKey from the keyStore instance
-            secretKey = (SecretKey) keyStore.getKey(KEY_NAME, null);
-
-            // create a cipher instance
-            cipher = Cipher.getInstance(
-                    KeyProperties.KEY_ALGORITHM_AES + "/" + KeyProperties.BLOCK_MODE_CBC + "/"
-                            + KeyProperties.ENCRYPTION_PADDING_PKCS7);
-
-            // Attempt to encrypt the the cipher using the secretKey
+            // Attempt to encrypt the data using the secret key
             // It will only work if the user has authenticated within the last
             // AUTHENTICATION_DURATION_SECONDS
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            cipher.doFinal(SECRET_BYTE_ARRAY);
+            credentialSession.encrypt(SECRET_BYTE_ARRAY);
 
             // If the user has recently authenticated the flow will continue, else it will throw and exception
             showAlreadyAuthenticated();
@@ -165,11 +104,6 @@ public class FingerprintWithConfirmCredentialActivity extends AppCompatActivity
                             + e.getMessage(),
                     Toast.LENGTH_LONG).show();
             return false;
-
-        } catch (BadPaddingException | IllegalBlockSizeException | KeyStoreException |
-                CertificateException | UnrecoverableKeyException | IOException
-                | NoSuchPaddingException | NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -198,11 +132,11 @@ public class FingerprintWithConfirmCredentialActivity extends AppCompatActivity
         if (requestCode == REQUEST_CODE_CONFIRM_DEVICE_CREDENTIALS) {
             // Challenge completed, proceed with using cipher
             if (resultCode == RESULT_OK) {
+                credentialSession.onAuthenticated();
                 try {
-                    cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-                    cipher.doFinal(SECRET_BYTE_ARRAY);
+                    credentialSession.encrypt(SECRET_BYTE_ARRAY);
                     showPurchaseConfirmation();
-                } catch (IllegalBlockSizeException | InvalidKeyException | BadPaddingException e) {
+                } catch (UserNotAuthenticatedException | KeyPermanentlyInvalidatedException e) {
                     e.printStackTrace();
                 }
 
@@ -3,9 +3,12 @@ package np.com.grishma.fingerprintmanagerdemo.withdialogactivity;
 import android.app.Activity;
 import android.app.DialogFragment;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.hardware.fingerprint.FingerprintManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -19,22 +22,15 @@ import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.io.IOException;
-import java.security.KeyFactory;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.PublicKey;
-import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.security.cert.CertificateException;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import np.com.grishma.fingerprintmanagerdemo.FingerprintManagerDemoApplication;
 import np.com.grishma.fingerprintmanagerdemo.R;
 import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackend;
-import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
 import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
 
 /**
@@ -44,6 +40,9 @@ import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transacti
 public class FingerprintAuthenticationDialogFragment extends DialogFragment
         implements TextView.OnEditorActionListener, FingerprintUiHelper.Callback {
 
+    /** Runs the calls to the backend, which may block on the network */
+    private static final ExecutorService VERIFY_EXECUTOR = Executors.newCachedThreadPool();
+
     private Button cancelButton;
     private Button secondDialogButton;
     private View fingerprintContent;
@@ -60,6 +59,13 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
     private InputMethodManager inputMethodManager;
     private SharedPreferences sharedPreferences;
     private StoreBackend storeBackend;
+    private NonceSource nonceSource;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private PurchaseTask purchaseTask;
+    /** The password check running on {@link #VERIFY_EXECUTOR}, if any */
+    private PasswordCheck passwordCheck;
+    /** A result that arrived while the fragment wasn't resumed, delivered by {@link #onResume} */
+    private Runnable pendingResult;
 
     public FingerprintAuthenticationDialogFragment() {
     }
@@ -72,14 +78,14 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
         setRetainInstance(true);
         setStyle(DialogFragment.STYLE_NORMAL, android.R.style.Theme_Material_Light_Dialog);
 
-        // We register a new user account here. Real apps should do this with proper UIs.
-
         fingerprintUiHelperBuilder = new FingerprintUiHelper.FingerprintUiHelperBuilder(getContext().getSystemService(FingerprintManager.class));
         inputMethodManager = (InputMethodManager) getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(getContext());
-        storeBackend = new StoreBackendImpl();
-
-        enroll();
+        // The user has been enrolled by the activity when the key pair was set up.
+        FingerprintManagerDemoApplication application =
+                FingerprintManagerDemoApplication.get(getContext());
+        storeBackend = application.getStoreBackend();
+        nonceSource = application.getNonceSource();
     }
 
     @Override
@@ -134,6 +140,11 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
         if (stage == Stage.FINGERPRINT) {
             fingerprintUiHelper.startListening(cryptoObject);
         }
+        if (pendingResult != null) {
+            Runnable result = pendingResult;
+            pendingResult = null;
+            result.run();
+        }
     }
 
     public void setStage(Stage stage) {
@@ -146,6 +157,28 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
         fingerprintUiHelper.stopListening();
     }
 
+    @Override
+    public void onDismiss(DialogInterface dialog) {
+        super.onDismiss(dialog);
+        // The retained fragment outlives a rotation, which dismisses the dialog as well, so the
+        // purchase keeps going and its result is delivered to the new activity. Otherwise the
+        // result of a purchase or password check still in progress is dropped, the activity isn't
+        // told. The fragment is shown again for the next purchase, which must not see it.
+        Activity host = getActivity();
+        if (host != null && host.isChangingConfigurations()) {
+            return;
+        }
+        if (purchaseTask != null) {
+            purchaseTask.cancel();
+            purchaseTask = null;
+        }
+        if (passwordCheck != null) {
+            passwordCheck.cancelled = true;
+            passwordCheck = null;
+        }
+        pendingResult = null;
+    }
+
     @Override
     public void onAttach(Activity activity) {
         super.onAttach(activity);
@@ -159,6 +192,18 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
         this.cryptoObject = cryptoObject;
     }
 
+    /**
+     * Runs a result on the main thread now if the fragment is resumed, or else once it is, so the
+     * dialog is never dismissed after the state of the activity has been saved.
+     */
+    private void deliverWhenResumed(Runnable result) {
+        if (isResumed()) {
+            result.run();
+        } else {
+            pendingResult = result;
+        }
+    }
+
     /**
      * Switches to backup (password) screen. This either can happen when fingerprint is not
      * available or the user chooses to use the password authentication method by pressing the
@@ -177,38 +222,51 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
     }
 
     /**
-     * Enrolls a user to the fake backend.
+     * Checks whether the current entered password is correct on {@link #VERIFY_EXECUTOR}, since
+     * the backend hashes it, which takes a while. Once it is, dismisses the dialog and lets the
+     * activity know about the result.
      */
-    private void enroll() {
-        try {
-            KeyStore keyStore = KeyStore.getInstance("AndroidKeyStore");
-            keyStore.load(null);
-            PublicKey publicKey = keyStore.getCertificate(FingerprintWithDialogActivity.KEY_NAME).getPublicKey();
-            // Provide the public key to the backend. In most cases, the key needs to be transmitted
-            // to the backend over the network, for which Key.getEncoded provides a suitable wire
-            // format (X.509 DER-encoded). The backend can then create a PublicKey instance from the
-            // X.509 encoded form using KeyFactory.generatePublic. This conversion is also currently
-            // needed on API Level 23 (Android M) due to a platform bug which prevents the use of
-            // Android Keystore public keys when their private keys require user authentication.
-            // This conversion creates a new public key which is not backed by Android Keystore and
-            // thus is not affected by the bug.
-            KeyFactory factory = KeyFactory.getInstance(publicKey.getAlgorithm());
-            X509EncodedKeySpec spec = new X509EncodedKeySpec(publicKey.getEncoded());
-            PublicKey verificationKey = factory.generatePublic(spec);
-            storeBackend.enroll("user", "password", verificationKey);
-        } catch (KeyStoreException | CertificateException | NoSuchAlgorithmException |
-                IOException | InvalidKeySpecException e) {
-            e.printStackTrace();
+    private void verifyPassword() {
+        if (passwordCheck != null) {
+            return;
         }
+        final PasswordCheck check = new PasswordCheck();
+        passwordCheck = check;
+        secondDialogButton.setEnabled(false);
+        final Transaction transaction = new Transaction("user", 1, nonceSource.next());
+        final String enteredPassword = password.getText().toString();
+        VERIFY_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (check.cancelled) {
+                    return;
+                }
+                final boolean verified = storeBackend.verify(transaction, enteredPassword);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (check.cancelled) {
+                            return;
+                        }
+                        deliverWhenResumed(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!check.cancelled) {
+                                    onPasswordVerified(verified);
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+        });
     }
 
-    /**
-     * Checks whether the current entered password is correct, and dismisses the the dialog and lets
-     * the activity know about the result.
-     */
-    private void verifyPassword() {
-        Transaction transaction = new Transaction("user", 1, new SecureRandom().nextLong());
-        if (!storeBackend.verify(transaction, password.getText().toString())) {
+    private void onPasswordVerified(boolean verified) {
+        passwordCheck = null;
+        secondDialogButton.setEnabled(true);
+        if (!verified) {
+            password.setError(getString(R.string.password_incorrect));
             return;
         }
         if (stage == Stage.NEW_FINGERPRINT_ENROLLED) {
@@ -270,32 +328,119 @@ public class FingerprintAuthenticationDialogFragment extends DialogFragment
 
     @Override
     public void onAuthenticated() {
-        // Callback from FingerprintUiHelper. Let the activity know that authentication was
-        // successful.
+        // Callback from FingerprintUiHelper. Sign and verify the purchase off the main thread,
+        // the activity is told about the result once it has been verified.
         password.setText("");
-        Signature signature = cryptoObject.getSignature();
-        // Include a client nonce in the transaction so that the nonce is also signed by the private
-        // key and the backend can verify that the same nonce can't be used to prevent replay
-        // attacks.
-        Transaction transaction = new Transaction("user", 1, new SecureRandom().nextLong());
-        try {
-            signature.update(transaction.toByteArray());
-            byte[] sigBytes = signature.sign();
-            if (storeBackend.verify(transaction, sigBytes)) {
+        purchaseTask = new PurchaseTask(cryptoObject.getSignature());
+        purchaseTask.start();
+    }
+
+    @Override
+    public void onError() {
+        goToBackup();
+    }
+
+    /**
+     * Signs a purchase on {@link FingerprintWithDialogActivity#CRYPTO_EXECUTOR}, the thread that
+     * also initializes the signature, verifies it with the backend on {@link #VERIFY_EXECUTOR} and
+     * delivers the result to the activity on the main thread once the fragment is resumed. A
+     * rotation doesn't cancel it, the result goes to the new activity. Once cancelled, the
+     * remaining stages are skipped and nothing is delivered.
+     */
+    private final class PurchaseTask {
+
+        private final Signature signature;
+        private volatile boolean cancelled;
+        private volatile Future<?> verification;
+
+        PurchaseTask(Signature signature) {
+            this.signature = signature;
+        }
+
+        void start() {
+            FingerprintWithDialogActivity.CRYPTO_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sign();
+                }
+            });
+        }
+
+        /**
+         * Must be called on the main thread.
+         */
+        void cancel() {
+            cancelled = true;
+            Future<?> verification = this.verification;
+            if (verification != null) {
+                verification.cancel(true);
+            }
+        }
+
+        private void sign() {
+            if (cancelled) {
+                return;
+            }
+            // Include a client nonce in the transaction so that the nonce is also signed by the
+            // private key and the backend can verify that the same nonce can't be used to prevent
+            // replay attacks.
+            final Transaction transaction = new Transaction("user", 1, nonceSource.next());
+            final byte[] sigBytes;
+            try {
+                signature.update(transaction.toByteArray());
+                sigBytes = signature.sign();
+            } catch (SignatureException e) {
+                throw new RuntimeException(e);
+            }
+            if (cancelled) {
+                return;
+            }
+            verification = VERIFY_EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    verify(transaction, sigBytes);
+                }
+            });
+        }
+
+        private void verify(Transaction transaction, final byte[] sigBytes) {
+            final boolean verified = storeBackend.verify(transaction, sigBytes);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled) {
+                        deliverWhenResumed(new Runnable() {
+                            @Override
+                            public void run() {
+                                deliver(verified, sigBytes);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+
+        private void deliver(boolean verified, byte[] sigBytes) {
+            if (cancelled) {
+                return;
+            }
+            purchaseTask = null;
+            if (verified) {
                 activity.onPurchased(sigBytes);
-                dismiss();
             } else {
                 activity.onPurchaseFailed();
-                dismiss();
             }
-        } catch (SignatureException e) {
-            throw new RuntimeException(e);
+            dismiss();
         }
     }
 
-    @Override
-    public void onError() {
-        goToBackup();
+    /**
+     * A password check on {@link #VERIFY_EXECUTOR}. Its result is dropped once it is cancelled,
+     * which only happens on the main thread.
+     */
+    private static final class PasswordCheck {
+
+        volatile boolean cancelled;
     }
 
     /**
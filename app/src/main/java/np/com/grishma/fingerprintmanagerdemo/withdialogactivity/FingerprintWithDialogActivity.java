@@ -6,6 +6,9 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.hardware.fingerprint.FingerprintManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyPermanentlyInvalidatedException;
@@ -14,6 +17,7 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.hardware.fingerprint.FingerprintManagerCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Base64;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
@@ -21,27 +25,42 @@ import android.widget.Toast;
 import java.io.IOException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.security.Signature;
 import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
+import np.com.grishma.fingerprintmanagerdemo.FingerprintManagerDemoApplication;
 import np.com.grishma.fingerprintmanagerdemo.R;
 
 public class FingerprintWithDialogActivity extends AppCompatActivity {
 
+    private static final String TAG = FingerprintWithDialogActivity.class.getSimpleName();
     private static final String DIALOG_FRAGMENT_TAG = "dialogFragment";
     public static final String KEY_NAME = "fingerprint_manager_with_dialog_key";
 
+    /**
+     * Runs all KeyStore, KeyPairGenerator and Signature work off the main thread. It is shared by
+     * all instances of the activity and runs one task at a time, so the key setup of an activity
+     * re-created on rotation never races the one of the previous instance.
+     */
+    static final Executor CRYPTO_EXECUTOR = Executors.newSingleThreadExecutor();
+
     @BindView(R.id.button_purchase_item)
     Button purchaseButton;
 
@@ -50,6 +69,8 @@ public class FingerprintWithDialogActivity extends AppCompatActivity {
     private KeyPairGenerator keyPairGenerator;
     private Signature signature;
     private SharedPreferences sharedPreferences;
+    private PublicKeyEnrollment publicKeyEnrollment;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -62,27 +83,7 @@ public class FingerprintWithDialogActivity extends AppCompatActivity {
         FingerprintManager fingerprintManager = getSystemService(FingerprintManager.class);
         dialogFragment = new FingerprintAuthenticationDialogFragment();
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
-
-        // get an instance of keystore
-        try {
-            keyStore = KeyStore.getInstance("AndroidKeyStore");
-        } catch (KeyStoreException e) {
-            throw new RuntimeException("Failed to get an instance of KeyStore", e);
-        }
-
-        // get an instance of keypair generator to create asymmetric key pairs, i.e. public key and private key
-        try {
-            keyPairGenerator = KeyPairGenerator.getInstance(KeyProperties.KEY_ALGORITHM_EC, "AndroidKeyStore");
-        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
-            throw new RuntimeException("Failed to get an instance of KeyPairGenerator", e);
-        }
-
-        // get an instance of signature to be used later
-        try {
-            signature = Signature.getInstance("SHA256withECDSA");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Failed to get an instance of Signature", e);
-        }
+        publicKeyEnrollment = FingerprintManagerDemoApplication.get(this).getPublicKeyEnrollment();
 
         // check if the user has set up a fingerprint or a lock screen
         if (!keyguardManager.isKeyguardSecure()) {
@@ -110,16 +111,54 @@ public class FingerprintWithDialogActivity extends AppCompatActivity {
             return;
         }
 
-        createKeyPair();
-        purchaseButton.setEnabled(true);
-
+        // The button stays disabled until the key pair is ready.
+        purchaseButton.setEnabled(false);
+        final long start = SystemClock.elapsedRealtime();
+        CRYPTO_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean created = setUpKeyPair();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Log.d(TAG, "Key pair " + (created ? "created" : "found") + " in "
+                                + (SystemClock.elapsedRealtime() - start) + " ms");
+                        if (!isDestroyed()) {
+                            purchaseButton.setEnabled(true);
+                        }
+                    }
+                });
+            }
+        });
     }
 
     @OnClick(R.id.button_purchase_item)
     public void setOnClick(View view) {
-        // Set up the crypto object for later. The object will be authenticated by use
-        // of the fingerprint.
-        if (initSignature()) {
+        // Set up the crypto object for later, off the main thread. The object will be
+        // authenticated by use of the fingerprint.
+        purchaseButton.setEnabled(false);
+        CRYPTO_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean initialized = initSignature();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isDestroyed()) {
+                            purchaseButton.setEnabled(true);
+                            showDialog(initialized);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param signatureInitialized the result of {@link #initSignature()}
+     */
+    private void showDialog(boolean signatureInitialized) {
+        if (signatureInitialized) {
 
             // Show the fingerprint dialog. The user has the option to use the fingerprint with
             // crypto, or you can fall back to using a server-side verified password.
@@ -145,11 +184,105 @@ public class FingerprintWithDialogActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Gets the instances of the key store, the key pair generator and the signature, creates the
+     * key pair unless the key store has one already and enrolls its public key with the backend.
+     * Runs on {@link #CRYPTO_EXECUTOR}.
+     * <p>
+     * The key pair is kept across activities so the public key the backend has enrolled stays
+     * valid. A private key invalidated by a newly enrolled fingerprint is kept as well: it makes
+     * {@link #initSignature()} fail, so the user has to confirm with the password before a new
+     * key pair is created.
+     *
+     * @return true if a key pair has been created.
+     */
+    private boolean setUpKeyPair() {
+        // get an instance of keystore
+        try {
+            keyStore = KeyStore.getInstance("AndroidKeyStore");
+            keyStore.load(null);
+        } catch (KeyStoreException | CertificateException | NoSuchAlgorithmException
+                | IOException e) {
+            throw new RuntimeException("Failed to get an instance of KeyStore", e);
+        }
+
+        // get an instance of keypair generator to create asymmetric key pairs, i.e. public key and private key
+        try {
+            keyPairGenerator = KeyPairGenerator.getInstance(KeyProperties.KEY_ALGORITHM_EC, "AndroidKeyStore");
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RuntimeException("Failed to get an instance of KeyPairGenerator", e);
+        }
+
+        // get an instance of signature to be used later
+        try {
+            signature = Signature.getInstance("SHA256withECDSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to get an instance of Signature", e);
+        }
+
+        PublicKey publicKey = findPublicKey();
+        boolean created = publicKey == null;
+        if (created) {
+            publicKey = generateKeyPair().getPublic();
+        }
+        enroll(publicKey);
+        return created;
+    }
+
+    /**
+     * @return the public key of the key pair under {@link #KEY_NAME}, or null if the key store
+     * doesn't hold both an EC private key and the certificate of its public key under it.
+     */
+    private PublicKey findPublicKey() {
+        try {
+            if (!keyStore.containsAlias(KEY_NAME)) {
+                return null;
+            }
+            Key key = keyStore.getKey(KEY_NAME, null);
+            Certificate certificate = keyStore.getCertificate(KEY_NAME);
+            if (!(key instanceof PrivateKey) || certificate == null) {
+                return null;
+            }
+            PublicKey publicKey = certificate.getPublicKey();
+            return KeyProperties.KEY_ALGORITHM_EC.equals(publicKey.getAlgorithm())
+                    ? publicKey : null;
+        } catch (UnrecoverableKeyException e) {
+            // A broken entry, it is replaced by a new key pair.
+            return null;
+        } catch (KeyStoreException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to read the key pair", e);
+        }
+    }
+
+    /**
+     * Enrolls the user with the public key, unless it is enrolled already. Runs on
+     * {@link #CRYPTO_EXECUTOR}, so it is done before a purchase uses the key pair.
+     */
+    private void enroll(PublicKey publicKey) {
+        // We register a new user account here. Real apps should do this with proper UIs.
+        if (!publicKeyEnrollment.enroll("user", "password", publicKey)) {
+            Log.w(TAG, "The backend rejected the enrollment");
+        }
+    }
+
+    /**
+     * Replaces the key pair by a new one and enrolls it on {@link #CRYPTO_EXECUTOR}. Purchases
+     * started afterwards use the new key pair.
+     */
+    public void createKeyPair() {
+        CRYPTO_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                enroll(generateKeyPair().getPublic());
+            }
+        });
+    }
+
     /**
      * Generates an asymmetric key pair in the Android Keystore. Every use of the private key must
      * be authorized by the user authenticating with fingerprint. Public key use is unrestricted.
      */
-    public void createKeyPair() {
+    private KeyPair generateKeyPair() {
         // The enrolling flow for fingerprint. This is where you ask the user to set up fingerprint
         // for your flow. Use of keys is necessary if you need to know if the set of
         // enrolled fingerprints has changed.
@@ -165,7 +298,7 @@ public class FingerprintWithDialogActivity extends AppCompatActivity {
                             // every use of the private key
                             .setUserAuthenticationRequired(true)
                             .build());
-            keyPairGenerator.generateKeyPair();
+            return keyPairGenerator.generateKeyPair();
         } catch (InvalidAlgorithmParameterException e) {
             throw new RuntimeException(e);
         }
@@ -173,7 +306,7 @@ public class FingerprintWithDialogActivity extends AppCompatActivity {
 
     /**
      * Initialize the {@link Signature} instance with the created key in the
-     * {@link #createKeyPair()} method.
+     * {@link #generateKeyPair()} method. Runs on {@link #CRYPTO_EXECUTOR}.
      *
      * @return {@code true} if initialization is successful, {@code false} if the lock screen has
      * been disabled or reset after the key was generated, or if a fingerprint got enrolled after
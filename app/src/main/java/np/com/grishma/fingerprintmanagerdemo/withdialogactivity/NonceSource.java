@@ -0,0 +1,152 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Hands out the client nonces of transactions from blocks of pre-generated nonces.
+ * <p>
+ * The nonces are the encryptions of a counter with a random Blowfish key. Blowfish is a
+ * permutation of 64-bit blocks, so no nonce is handed out twice by the same source, and without
+ * the key they can't be told apart from random numbers. The key is the only entropy needed, so a
+ * nonce never waits for the system's random number generator.
+ * <p>
+ * Once half of the current block has been handed out, the next block is generated on the refill
+ * executor. Taking a nonce is an atomic increment of the index into the current block; only if
+ * the next block isn't ready when the current one runs out does the caller generate it itself.
+ */
+public final class NonceSource {
+
+    /** The default number of nonces generated at once */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private static final String ALGORITHM = "Blowfish";
+    private static final int KEY_LENGTH = 16;
+
+    private final int blockSize;
+    private final Executor refillExecutor;
+    private final Cipher cipher;
+    /** The counter of the first nonce of the next block, guarded by this */
+    private long counter;
+    private final AtomicReference<Block> current;
+
+    public NonceSource() {
+        this(DEFAULT_BLOCK_SIZE, newRefillExecutor());
+    }
+
+    /**
+     * @param blockSize      the number of nonces generated at once
+     * @param refillExecutor the executor generating the next block ahead of time
+     */
+    public NonceSource(int blockSize, Executor refillExecutor) {
+        if (blockSize < 2) {
+            throw new IllegalArgumentException("blockSize must be at least 2: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.refillExecutor = refillExecutor;
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        try {
+            cipher = Cipher.getInstance(ALGORITHM + "/ECB/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to set up the " + ALGORITHM + " cipher", e);
+        }
+        current = new AtomicReference<>(generate());
+    }
+
+    private static ExecutorService newRefillExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "nonce-source");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return a nonce that this source has never returned before.
+     */
+    public long next() {
+        while (true) {
+            Block block = current.get();
+            int index = block.next.getAndIncrement();
+            if (index < blockSize) {
+                if (index == blockSize / 2) {
+                    refill(block);
+                }
+                return block.nonces[index];
+            }
+            Block successor = block.successor.get();
+            if (successor == null) {
+                // The refill hasn't finished yet, generate the next block on this thread.
+                successor = generateSuccessor(block);
+            }
+            current.compareAndSet(block, successor);
+        }
+    }
+
+    private void refill(final Block block) {
+        refillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                generateSuccessor(block);
+            }
+        });
+    }
+
+    /**
+     * @return the successor of the block, generated by this call unless another one was first.
+     * The nonces of a block that lost the race are never handed out.
+     */
+    private Block generateSuccessor(Block block) {
+        Block successor = block.successor.get();
+        if (successor != null) {
+            return successor;
+        }
+        successor = generate();
+        if (!block.successor.compareAndSet(null, successor)) {
+            successor = block.successor.get();
+        }
+        return successor;
+    }
+
+    private synchronized Block generate() {
+        ByteBuffer counters = ByteBuffer.allocate(blockSize * 8);
+        for (int i = 0; i < blockSize; i++) {
+            counters.putLong(counter++);
+        }
+        byte[] encrypted;
+        try {
+            encrypted = cipher.doFinal(counters.array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to generate nonces", e);
+        }
+        long[] nonces = new long[blockSize];
+        ByteBuffer.wrap(encrypted).asLongBuffer().get(nonces);
+        return new Block(nonces);
+    }
+
+    private static final class Block {
+
+        final long[] nonces;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Block> successor = new AtomicReference<>();
+
+        Block(long[] nonces) {
+            this.nonces = nonces;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackend;
+
+/**
+ * Enrolls public keys with a {@link StoreBackend} once per key pair.
+ * <p>
+ * The encoded form of the last public key enrolled for every user is remembered, so enrolling the
+ * same key again, e.g. every time the activity is created, doesn't reach the backend. Enrolling
+ * can block, so it must not be called on the main thread.
+ */
+public class PublicKeyEnrollment {
+
+    private final StoreBackend storeBackend;
+    private final Map<String, byte[]> enrolledKeys = new HashMap<>();
+
+    public PublicKeyEnrollment(StoreBackend storeBackend) {
+        this.storeBackend = storeBackend;
+    }
+
+    /**
+     * Enrolls the user with the public key, unless it is enrolled already.
+     *
+     * @return true if the public key is enrolled, false if the backend rejected it.
+     */
+    public synchronized boolean enroll(String userId, String password, PublicKey publicKey) {
+        // Provide the public key to the backend. In most cases, the key needs to be transmitted
+        // to the backend over the network, for which Key.getEncoded provides a suitable wire
+        // format (X.509 DER-encoded). The backend then creates a PublicKey instance from the
+        // X.509 encoded form using KeyFactory.generatePublic. This conversion is also currently
+        // needed on API Level 23 (Android M) due to a platform bug which prevents the use of
+        // Android Keystore public keys when their private keys require user authentication.
+        // This conversion creates a new public key which is not backed by Android Keystore and
+        // thus is not affected by the bug.
+        byte[] encodedPublicKey = publicKey.getEncoded();
+        if (Arrays.equals(encodedPublicKey, enrolledKeys.get(userId))) {
+            return true;
+        }
+        if (!storeBackend.enroll(userId, password, publicKey.getAlgorithm(), encodedPublicKey)) {
+            return false;
+        }
+        enrolledKeys.put(userId, encodedPublicKey);
+        return true;
+    }
+}
@@ -0,0 +1,276 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An entity that represents the purchase of a cart of items with a single signature.
+ * <p>
+ * The signed form of a cart is:
+ * <ul>
+ * <li>the 8 byte {@link #MAGIC} followed by three 0xFF bytes,</li>
+ * <li>the user ID as a two byte length followed by its modified UTF-8 bytes,</li>
+ * <li>the big-endian client nonce,</li>
+ * <li>the number of items as a varint and for every item the difference to the previous item ID
+ * (to 0 for the first) as a zigzag varint and the quantity as a varint.</li>
+ * </ul>
+ * Varints take 7 bits per byte, so sorted item IDs close to each other and small quantities take
+ * a byte or two each however large the cart is. The header can't be mistaken for the signed form
+ * of a {@link Transaction}: there the bytes after the item ID would start a user ID of 0xFFFF
+ * bytes with 0xFF, which is never part of modified UTF-8. So a signature of a cart is never
+ * accepted for a transaction and the other way round.
+ * <p>
+ * A cart has a client nonce like a transaction and the backend remembers them alike, so a nonce
+ * of a user can only be used once by either.
+ */
+public class CartTransaction {
+
+    /** The first 8 bytes of the signed form of every cart, "CART" and the format version 1 */
+    public static final long MAGIC = 0x4341525400000001L;
+
+    /** The largest number of items of a cart */
+    public static final int MAX_ITEMS = 10_000;
+
+    /** The size of the magic, the 0xFF bytes, the user ID length prefix and the client nonce */
+    private static final int FIXED_LENGTH = 8 + 3 + 2 + 8;
+
+    /** The largest possible signed form, with a user ID of 0xFFFF bytes and the largest varints */
+    public static final int MAX_ENCODED_LENGTH = FIXED_LENGTH + 0xFFFF + 2 + MAX_ITEMS * (10 + 5);
+
+    private final String mUserId;
+    private final long mClientNonce;
+    private final long[] mItemIds;
+    private final int[] mQuantities;
+    private final int mUserIdLength;
+    private final int mEncodedLength;
+
+    /**
+     * Lazily computed encoding for carts that are encoded more than once, volatile so that other
+     * threads never see the array before its contents.
+     */
+    private volatile byte[] mEncoded;
+
+    /**
+     * @param userId      the unique user ID who made the purchase
+     * @param itemIds     the unique IDs of the items, each item at most once
+     * @param quantities  the quantities of the items, in the same order, at least 1 each
+     * @param clientNonce the random value that is signed along and can't be used again
+     * @throws IllegalArgumentException if an item is listed more than once
+     */
+    public CartTransaction(String userId, long[] itemIds, int[] quantities, long clientNonce) {
+        if (itemIds.length != quantities.length) {
+            throw new IllegalArgumentException("Got " + itemIds.length + " items but "
+                    + quantities.length + " quantities");
+        }
+        if (itemIds.length == 0 || itemIds.length > MAX_ITEMS) {
+            throw new IllegalArgumentException("Invalid number of items: " + itemIds.length);
+        }
+        mUserId = userId;
+        mClientNonce = clientNonce;
+        mItemIds = itemIds.clone();
+        mQuantities = quantities.clone();
+        mUserIdLength = Transaction.modifiedUtf8Length(userId);
+        if (mUserIdLength > 0xFFFF) {
+            throw new IllegalArgumentException("userId is too long: " + mUserIdLength + " bytes");
+        }
+        int length = FIXED_LENGTH + mUserIdLength + varintLength(mItemIds.length);
+        long previous = 0;
+        for (int i = 0; i < mItemIds.length; i++) {
+            if (mQuantities[i] < 1) {
+                throw new IllegalArgumentException("Invalid quantity: " + mQuantities[i]);
+            }
+            length += varintLength(zigzag(mItemIds[i] - previous)) + varintLength(mQuantities[i]);
+            previous = mItemIds[i];
+        }
+        mEncodedLength = length;
+        long[] sortedItemIds = mItemIds.clone();
+        Arrays.sort(sortedItemIds);
+        for (int i = 1; i < sortedItemIds.length; i++) {
+            if (sortedItemIds[i] == sortedItemIds[i - 1]) {
+                throw new IllegalArgumentException("Duplicate item: " + sortedItemIds[i]);
+            }
+        }
+    }
+
+    public String getUserId() {
+        return mUserId;
+    }
+
+    public long getClientNonce() {
+        return mClientNonce;
+    }
+
+    public int getItemCount() {
+        return mItemIds.length;
+    }
+
+    public long getItemId(int index) {
+        return mItemIds[index];
+    }
+
+    public int getQuantity(int index) {
+        return mQuantities[index];
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo(ByteBuffer)} writes.
+     */
+    public int encodedLength() {
+        return mEncodedLength;
+    }
+
+    /**
+     * Writes the signed form of this cart at the current position of the buffer.
+     *
+     * @throws BufferOverflowException if there is not enough space in the buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        byte[] encoded = mEncoded;
+        if (encoded != null) {
+            buffer.put(encoded);
+            return;
+        }
+        if (buffer.remaining() < mEncodedLength) {
+            throw new BufferOverflowException();
+        }
+        buffer.putLong(MAGIC);
+        buffer.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF);
+        buffer.putShort((short) mUserIdLength);
+        Transaction.writeModifiedUtf8(buffer, mUserId);
+        buffer.putLong(mClientNonce);
+        putVarint(buffer, mItemIds.length);
+        long previous = 0;
+        for (int i = 0; i < mItemIds.length; i++) {
+            putVarint(buffer, zigzag(mItemIds[i] - previous));
+            putVarint(buffer, mQuantities[i]);
+            previous = mItemIds[i];
+        }
+    }
+
+    /**
+     * @return a new array with the signed form of this cart.
+     */
+    public byte[] toByteArray() {
+        return encoded().clone();
+    }
+
+    /**
+     * @return the cached signed form of this cart, which must not be modified.
+     */
+    byte[] encoded() {
+        byte[] encoded = mEncoded;
+        if (encoded == null) {
+            encoded = new byte[mEncodedLength];
+            writeTo(ByteBuffer.wrap(encoded));
+            mEncoded = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes the signed form of a cart, i.e. the remaining bytes of the buffer. The position of
+     * the buffer is left unchanged.
+     *
+     * @throws IllegalArgumentException if the bytes aren't the signed form of a cart
+     */
+    public static CartTransaction decode(ByteBuffer signedCart) {
+        ByteBuffer in = signedCart.duplicate();
+        if (in.remaining() < FIXED_LENGTH || in.getLong() != MAGIC
+                || in.get() != (byte) 0xFF || in.get() != (byte) 0xFF
+                || in.get() != (byte) 0xFF) {
+            throw new IllegalArgumentException("Not a cart");
+        }
+        int userIdLength = in.getShort() & 0xFFFF;
+        if (in.remaining() < userIdLength + 8) {
+            throw new IllegalArgumentException("Truncated cart");
+        }
+        String userId = TransactionCodec.readModifiedUtf8(in, in.position(), userIdLength);
+        in.position(in.position() + userIdLength);
+        long clientNonce = in.getLong();
+        long count = getVarint(in);
+        if (count < 1 || count > MAX_ITEMS) {
+            throw new IllegalArgumentException("Invalid number of items: " + count);
+        }
+        long[] itemIds = new long[(int) count];
+        int[] quantities = new int[itemIds.length];
+        long previous = 0;
+        for (int i = 0; i < itemIds.length; i++) {
+            long delta = getVarint(in);
+            itemIds[i] = previous + ((delta >>> 1) ^ -(delta & 1));
+            long quantity = getVarint(in);
+            if (quantity < 1 || quantity > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid quantity: " + quantity);
+            }
+            quantities[i] = (int) quantity;
+            previous = itemIds[i];
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException(in.remaining() + " bytes after the cart");
+        }
+        CartTransaction cart = new CartTransaction(userId, itemIds, quantities, clientNonce);
+        if (cart.mEncodedLength != signedCart.remaining()) {
+            // A varint with superfluous bytes, which would give the cart two signed forms.
+            throw new IllegalArgumentException("Non-canonical cart");
+        }
+        return cart;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated cart");
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        CartTransaction that = (CartTransaction) o;
+        return mClientNonce == that.mClientNonce && mUserId.equals(that.mUserId)
+                && Arrays.equals(mItemIds, that.mItemIds)
+                && Arrays.equals(mQuantities, that.mQuantities);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * mUserId.hashCode() + (int) (mClientNonce ^ (mClientNonce >>> 32));
+        hash = 31 * hash + Arrays.hashCode(mItemIds);
+        return 31 * hash + Arrays.hashCode(mQuantities);
+    }
+}
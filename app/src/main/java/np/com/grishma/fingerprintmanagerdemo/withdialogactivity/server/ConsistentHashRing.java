@@ -0,0 +1,143 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable consistent hash ring mapping keys to named nodes.
+ * <p>
+ * Every node is placed on the ring at a number of pseudo-random points (virtual nodes) and a key
+ * belongs to the node of the first point at or after the key's hash. Adding or removing a node
+ * therefore only moves the keys of the arcs next to its points, about {@code 1 / nodes} of all
+ * keys, and the virtual nodes spread the keys evenly. The points are kept in a sorted array, so a
+ * lookup is a binary search without any allocation.
+ *
+ * @param <T> the type of the nodes
+ */
+final class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private final Map<String, T> nodes;
+    private final long[] points;
+    private final Object[] owners;
+
+    /**
+     * @param virtualNodes the number of points of every node on the ring
+     */
+    ConsistentHashRing(int virtualNodes) {
+        this(virtualNodes, Collections.<String, T>emptyMap());
+    }
+
+    private ConsistentHashRing(int virtualNodes, Map<String, T> nodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        this.nodes = Collections.unmodifiableMap(nodes);
+        int count = nodes.size() * virtualNodes;
+        long[] unsorted = new long[count];
+        Object[] unsortedOwners = new Object[count];
+        int i = 0;
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            for (int v = 0; v < virtualNodes; v++) {
+                unsorted[i] = hash(node.getKey() + '#' + v);
+                unsortedOwners[i] = node.getValue();
+                i++;
+            }
+        }
+        // Sort the points and their owners together. Ties are broken by the order the nodes were
+        // added in, which is the same for every ring with the same nodes.
+        Integer[] order = new Integer[count];
+        for (int j = 0; j < count; j++) {
+            order[j] = j;
+        }
+        final long[] keys = unsorted;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int compared = Long.compare(keys[a], keys[b]);
+                return compared != 0 ? compared : Integer.compare(a, b);
+            }
+        });
+        points = new long[count];
+        owners = new Object[count];
+        for (int j = 0; j < count; j++) {
+            points[j] = unsorted[order[j]];
+            owners[j] = unsortedOwners[order[j]];
+        }
+    }
+
+    /**
+     * @return a ring with the node added, or replaced if there is a node with the same name.
+     */
+    ConsistentHashRing<T> withNode(String name, T node) {
+        Map<String, T> added = new LinkedHashMap<>(nodes);
+        added.put(name, node);
+        return new ConsistentHashRing<>(virtualNodes, added);
+    }
+
+    /**
+     * @return a ring without the node of the name.
+     */
+    ConsistentHashRing<T> withoutNode(String name) {
+        Map<String, T> removed = new LinkedHashMap<>(nodes);
+        removed.remove(name);
+        return new ConsistentHashRing<>(virtualNodes, removed);
+    }
+
+    /**
+     * @return the nodes by their names, in the order they were added.
+     */
+    Map<String, T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the node the key belongs to, or null if the ring is empty.
+     */
+    T get(String key) {
+        return get(hash(key));
+    }
+
+    /**
+     * @param keyHash the {@link #hash(String)} of the key
+     * @return the node the key belongs to, or null if the ring is empty.
+     */
+    @SuppressWarnings("unchecked")
+    T get(long keyHash) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, keyHash);
+        if (index < 0) {
+            index = -index - 1;
+        } else {
+            // Several points can have the same hash, the first one owns it.
+            while (index > 0 && points[index - 1] == points[index]) {
+                index--;
+            }
+        }
+        return (T) owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the characters of the string, finished with the MurmurHash3 mixer so
+     * that similar strings such as the names of virtual nodes land far apart.
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, length = s.length(); i < length; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
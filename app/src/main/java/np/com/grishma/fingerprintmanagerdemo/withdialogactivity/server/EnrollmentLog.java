@@ -0,0 +1,317 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A durable store of enrolled public keys: an append-only log of (user ID, X.509 encoded key)
+ * records, written through a memory-mapped {@link FileChannel}.
+ * <p>
+ * Re-enrolling a user appends a new record which supersedes the older ones. Opening the log scans
+ * the mapped file once and builds an in-memory index from user ID to the offset of the user's
+ * latest record; keys are only decoded when they are read. {@link #compact()} rewrites the file
+ * with the latest record of every user only.
+ * <p>
+ * The file starts with a header ({@link #MAGIC}, {@link #VERSION}) followed by the records. Each
+ * record is the length of its payload, the CRC32 of its payload and the payload: the user ID, the
+ * key algorithm and the encoded key. The mapping reaches beyond the last record and the unused
+ * part of the file is zero, so a zero length marks the end of the log. A record whose length runs
+ * past the end of the file or whose checksum doesn't match has been torn by a crash while it was
+ * being written; recovery stops there and the next append overwrites it.
+ * <p>
+ * Records only reach the disk once {@link #flush()} has been called, which forces the mapping
+ * unless nothing has been appended since the last flush. The log is a single mapping, so it can't
+ * grow beyond 2 GB: when an append would cross that, the log is compacted if that frees any space,
+ * and otherwise the append fails with an {@link IOException} saying so. All methods are
+ * synchronized, the log is expected to sit behind a cache of decoded keys.
+ */
+public class EnrollmentLog implements Closeable {
+
+    static final int MAGIC = 0x454e524c;
+    static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MIN_MAPPED_LENGTH = 1024 * 1024;
+
+    private final File file;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final Map<String, KeyFactory> keyFactories = new HashMap<>();
+    private final byte[] checksumChunk = new byte[4096];
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int recordCount;
+    /** Whether records have been appended since the last flush */
+    private boolean dirty;
+
+    private EnrollmentLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the log at the file, creating it if it doesn't exist, and rebuilds the index from the
+     * records in it.
+     */
+    public static EnrollmentLog open(File file) throws IOException {
+        EnrollmentLog log = new EnrollmentLog(file);
+        log.map();
+        log.recover();
+        return log;
+    }
+
+    private void map() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        long length = randomAccessFile.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(file + " is too large");
+        }
+        remap((int) Math.max(length, MIN_MAPPED_LENGTH));
+    }
+
+    private void remap(int length) throws IOException {
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    private void recover() throws IOException {
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else if (magic != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " is not an enrollment log");
+        }
+        int position = HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_LENGTH <= buffer.capacity()) {
+            int payloadLength = buffer.getInt(position);
+            if (payloadLength == 0) {
+                break;
+            }
+            int payloadStart = position + RECORD_HEADER_LENGTH;
+            if (payloadLength < 0 || payloadLength > buffer.capacity() - payloadStart
+                    || checksum(crc, payloadStart, payloadLength) != buffer.getInt(position + 4)) {
+                // A torn record, clear it so it can't be mistaken for a record later.
+                int end = payloadLength < 0 ? buffer.capacity()
+                        : (int) Math.min(buffer.capacity(), (long) payloadStart + payloadLength);
+                for (int i = position; i < end; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+            index.put(readUserId(position), position);
+            recordCount++;
+            position = payloadStart + payloadLength;
+        }
+        writePosition = position;
+    }
+
+    private int checksum(CRC32 crc, int offset, int length) {
+        crc.reset();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset);
+        for (int remaining = length; remaining > 0; ) {
+            int count = Math.min(remaining, checksumChunk.length);
+            payload.get(checksumChunk, 0, count);
+            crc.update(checksumChunk, 0, count);
+            remaining -= count;
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends the key of the user to the log. It becomes durable with the next {@link #flush()}.
+     */
+    public synchronized void append(String userId, PublicKey publicKey) throws IOException {
+        byte[] userIdBytes = userId.getBytes(StandardCharsets.UTF_8);
+        byte[] algorithmBytes = publicKey.getAlgorithm().getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = publicKey.getEncoded();
+        if (userIdBytes.length > 0xFFFF || algorithmBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("userId or algorithm is too long");
+        }
+        int payloadLength = 2 + userIdBytes.length + 2 + algorithmBytes.length + encoded.length;
+        long recordEnd = (long) writePosition + RECORD_HEADER_LENGTH + payloadLength;
+        if (recordEnd > Integer.MAX_VALUE && recordCount > index.size()) {
+            // Superseded records may make room.
+            compact();
+            recordEnd = (long) writePosition + RECORD_HEADER_LENGTH + payloadLength;
+        }
+        if (recordEnd > Integer.MAX_VALUE) {
+            throw new IOException("The enrollment log " + file + " is full: a log is a single "
+                    + "mapping of at most 2 GB and holds the keys of " + index.size()
+                    + " users, none of them superseded");
+        }
+        if (recordEnd > buffer.capacity()) {
+            // Forcing the new mapping isn't guaranteed to write what went through the old one.
+            flush();
+            remap((int) Math.min(Integer.MAX_VALUE,
+                    Math.max(recordEnd, 2L * buffer.capacity())));
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(writePosition + RECORD_HEADER_LENGTH);
+        record.putShort((short) userIdBytes.length);
+        record.put(userIdBytes);
+        record.putShort((short) algorithmBytes.length);
+        record.put(algorithmBytes);
+        record.put(encoded);
+        int payloadStart = writePosition + RECORD_HEADER_LENGTH;
+        buffer.putInt(writePosition + 4, checksum(new CRC32(), payloadStart, payloadLength));
+        // The length goes last, a record without it is never read.
+        buffer.putInt(writePosition, payloadLength);
+
+        index.put(userId, writePosition);
+        recordCount++;
+        writePosition = (int) recordEnd;
+        dirty = true;
+    }
+
+    /**
+     * @return the latest key enrolled for the user, or null if the user isn't in the log.
+     */
+    public synchronized PublicKey get(String userId) throws IOException {
+        Integer position = index.get(userId);
+        if (position == null) {
+            return null;
+        }
+        ByteBuffer record = buffer.duplicate();
+        int payloadLength = record.getInt(position);
+        record.position(position + RECORD_HEADER_LENGTH);
+        int userIdLength = record.getShort() & 0xFFFF;
+        record.position(record.position() + userIdLength);
+        byte[] algorithmBytes = new byte[record.getShort() & 0xFFFF];
+        record.get(algorithmBytes);
+        byte[] encoded = new byte[payloadLength - 4 - userIdLength - algorithmBytes.length];
+        record.get(encoded);
+        String algorithm = new String(algorithmBytes, StandardCharsets.UTF_8);
+        try {
+            KeyFactory keyFactory = keyFactories.get(algorithm);
+            if (keyFactory == null) {
+                keyFactory = KeyFactory.getInstance(algorithm);
+                keyFactories.put(algorithm, keyFactory);
+            }
+            return keyFactory.generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Invalid key of " + userId + " in " + file, e);
+        }
+    }
+
+    private String readUserId(int position) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(position + RECORD_HEADER_LENGTH);
+        byte[] userIdBytes = new byte[record.getShort() & 0xFFFF];
+        record.get(userIdBytes);
+        return new String(userIdBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the number of enrolled users.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return a copy of the IDs of the users in the log.
+     */
+    public synchronized Set<String> getUserIds() {
+        return new HashSet<>(index.keySet());
+    }
+
+    /**
+     * @return the number of records in the log, including the ones superseded by re-enrollments.
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes the records appended since the last flush to the disk. Forcing the mapping only
+     * writes its modified pages, and a flush with nothing appended since the last one returns
+     * right away.
+     */
+    public synchronized void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        buffer.force();
+        dirty = false;
+    }
+
+    /**
+     * Compacts the log if more than the given fraction of its records have been superseded.
+     *
+     * @return true if the log was compacted.
+     */
+    public synchronized boolean compactIfNeeded(double maxGarbageRatio) throws IOException {
+        if (recordCount == 0 || (double) (recordCount - index.size()) / recordCount
+                <= maxGarbageRatio) {
+            return false;
+        }
+        compact();
+        return true;
+    }
+
+    /**
+     * Rewrites the log with only the latest record of every user. The compacted log is written
+     * next to the log and renamed over it, so a crash leaves either the old or the new log.
+     */
+    public synchronized void compact() throws IOException {
+        File compactFile = new File(file.getPath() + ".compact");
+        if (compactFile.exists() && !compactFile.delete()) {
+            throw new IOException("Failed to delete " + compactFile);
+        }
+        long liveLength = HEADER_LENGTH;
+        for (int position : index.values()) {
+            liveLength += RECORD_HEADER_LENGTH + buffer.getInt(position);
+        }
+        Map<String, Integer> compactedIndex = new HashMap<>();
+        try (RandomAccessFile compacted = new RandomAccessFile(compactFile, "rw")) {
+            MappedByteBuffer target = compacted.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    0, Math.max(liveLength, MIN_MAPPED_LENGTH));
+            target.putInt(MAGIC);
+            target.putInt(VERSION);
+            for (Map.Entry<String, Integer> entry : index.entrySet()) {
+                int position = entry.getValue();
+                ByteBuffer record = buffer.duplicate();
+                record.position(position);
+                record.limit(position + RECORD_HEADER_LENGTH + buffer.getInt(position));
+                compactedIndex.put(entry.getKey(), target.position());
+                target.put(record);
+            }
+            target.force();
+        }
+        if (!compactFile.renameTo(file)) {
+            throw new IOException("Failed to replace " + file + " with " + compactFile);
+        }
+        randomAccessFile.close();
+        map();
+        index.clear();
+        index.putAll(compactedIndex);
+        writePosition = (int) liveLength;
+        recordCount = index.size();
+        // Every live record has been forced to the compacted file.
+        dirty = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        randomAccessFile.close();
+    }
+}
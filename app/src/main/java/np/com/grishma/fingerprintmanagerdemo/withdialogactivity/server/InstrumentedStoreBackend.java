@@ -0,0 +1,177 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link StoreBackend} that counts the outcomes of the verifications and records the latencies
+ * of verify and enroll calls of the backend it wraps.
+ * <p>
+ * Nothing on the call path takes a lock: the outcome counters are striped by thread like the
+ * {@link LatencyHistogram}s. {@link #snapshot()} returns cumulative values, an exporter that wants
+ * rates takes snapshots periodically and subtracts the previous one.
+ */
+public class InstrumentedStoreBackend implements StoreBackend {
+
+    private static final int STRIPES = 8;
+    /** The distance of the counters of two stripes, 16 longs keep them on separate cache lines */
+    private static final int COUNTER_STRIDE = 16;
+
+    private final StoreBackend storeBackend;
+    private final AtomicLongArray outcomeCounts = new AtomicLongArray(STRIPES * COUNTER_STRIDE);
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+    private final LatencyHistogram verifyAllLatency = new LatencyHistogram();
+    private final LatencyHistogram enrollLatency = new LatencyHistogram();
+
+    /**
+     * @param storeBackend the backend to instrument
+     */
+    public InstrumentedStoreBackend(StoreBackend storeBackend) {
+        if (VerifyOutcome.values().length > COUNTER_STRIDE) {
+            throw new AssertionError("Not enough counters for all outcomes");
+        }
+        this.storeBackend = storeBackend;
+    }
+
+    private void count(VerifyOutcome outcome) {
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+        outcomeCounts.incrementAndGet(stripe * COUNTER_STRIDE + outcome.ordinal());
+    }
+
+    @Override
+    public boolean verify(Transaction transaction, byte[] transactionSignature) {
+        return verifyWithOutcome(transaction, transactionSignature) == VerifyOutcome.ACCEPTED;
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(Transaction transaction, byte[] transactionSignature) {
+        long start = System.nanoTime();
+        VerifyOutcome outcome = storeBackend.verifyWithOutcome(transaction, transactionSignature);
+        verifyLatency.record(System.nanoTime() - start);
+        count(outcome);
+        return outcome;
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(ByteBuffer signedTransaction,
+                                           ByteBuffer transactionSignature) {
+        long start = System.nanoTime();
+        VerifyOutcome outcome = storeBackend.verifyWithOutcome(signedTransaction,
+                transactionSignature);
+        verifyLatency.record(System.nanoTime() - start);
+        count(outcome);
+        return outcome;
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(CartTransaction cart, byte[] cartSignature) {
+        long start = System.nanoTime();
+        VerifyOutcome outcome = storeBackend.verifyWithOutcome(cart, cartSignature);
+        verifyLatency.record(System.nanoTime() - start);
+        count(outcome);
+        return outcome;
+    }
+
+    @Override
+    public VerifyOutcome[] verifyAll(Transaction[] transactions, byte[][] transactionSignatures) {
+        long start = System.nanoTime();
+        VerifyOutcome[] outcomes = storeBackend.verifyAll(transactions, transactionSignatures);
+        verifyAllLatency.record(System.nanoTime() - start);
+        for (VerifyOutcome outcome : outcomes) {
+            count(outcome);
+        }
+        return outcomes;
+    }
+
+    @Override
+    public boolean verify(Transaction transaction, String password) {
+        return storeBackend.verify(transaction, password);
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, PublicKey publicKey) {
+        long start = System.nanoTime();
+        try {
+            return storeBackend.enroll(userId, password, publicKey);
+        } finally {
+            enrollLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, String keyAlgorithm,
+                          byte[] encodedPublicKey) {
+        long start = System.nanoTime();
+        try {
+            return storeBackend.enroll(userId, password, keyAlgorithm, encodedPublicKey);
+        } finally {
+            enrollLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the metrics recorded since the backend was created.
+     */
+    public Metrics snapshot() {
+        Map<VerifyOutcome, Long> counts = new EnumMap<>(VerifyOutcome.class);
+        for (VerifyOutcome outcome : VerifyOutcome.values()) {
+            long count = 0;
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                count += outcomeCounts.get(stripe * COUNTER_STRIDE + outcome.ordinal());
+            }
+            counts.put(outcome, count);
+        }
+        return new Metrics(counts, verifyLatency.snapshot(), verifyAllLatency.snapshot(),
+                enrollLatency.snapshot());
+    }
+
+    /**
+     * A point in time copy of the metrics of an {@link InstrumentedStoreBackend}. The outcomes of
+     * transactions verified in batches are counted like single ones, the latency of a batch is
+     * recorded in {@link #getVerifyAllLatency()}.
+     */
+    public static final class Metrics {
+
+        private final Map<VerifyOutcome, Long> outcomeCounts;
+        private final LatencyHistogram.Snapshot verifyLatency;
+        private final LatencyHistogram.Snapshot verifyAllLatency;
+        private final LatencyHistogram.Snapshot enrollLatency;
+
+        Metrics(Map<VerifyOutcome, Long> outcomeCounts, LatencyHistogram.Snapshot verifyLatency,
+                LatencyHistogram.Snapshot verifyAllLatency,
+                LatencyHistogram.Snapshot enrollLatency) {
+            this.outcomeCounts = outcomeCounts;
+            this.verifyLatency = verifyLatency;
+            this.verifyAllLatency = verifyAllLatency;
+            this.enrollLatency = enrollLatency;
+        }
+
+        /**
+         * @return the number of verifications with the outcome.
+         */
+        public long getCount(VerifyOutcome outcome) {
+            return outcomeCounts.get(outcome);
+        }
+
+        public LatencyHistogram.Snapshot getVerifyLatency() {
+            return verifyLatency;
+        }
+
+        public LatencyHistogram.Snapshot getVerifyAllLatency() {
+            return verifyAllLatency;
+        }
+
+        public LatencyHistogram.Snapshot getEnrollLatency() {
+            return enrollLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "outcomes=" + outcomeCounts + "\nverify: " + verifyLatency + "\nverifyAll: "
+                    + verifyAllLatency + "\nenroll: " + enrollLatency;
+        }
+    }
+}
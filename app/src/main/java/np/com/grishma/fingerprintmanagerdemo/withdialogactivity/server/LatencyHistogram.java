@@ -0,0 +1,165 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a reported percentile is at most 12.5% above the actual
+ * value. To keep threads from contending on the same counters, every thread records into one of
+ * {@value #STRIPES} stripes, which are summed up when a {@link Snapshot} is taken.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int STRIPES = 8;
+    /** The distance of the sums of two stripes, 8 longs keep them on separate cache lines */
+    private static final int SUM_STRIDE = 8;
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final AtomicLongArray sums = new AtomicLongArray(STRIPES * SUM_STRIDE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+        counts.incrementAndGet(stripe * BUCKETS + bucketOf(nanos));
+        sums.addAndGet(stripe * SUM_STRIDE, nanos);
+        long currentMax;
+        while (nanos > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the latencies recorded so far. Latencies recorded while the snapshot is taken may or
+     * may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long bucketCount = counts.get(stripe * BUCKETS + bucket);
+                merged[bucket] += bucketCount;
+                count += bucketCount;
+            }
+        }
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += sums.get(stripe * SUM_STRIDE);
+        }
+        return new Snapshot(merged, count, sum, max.get());
+    }
+
+    /**
+     * A point in time copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean latency in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile the percentile between 0 and 100, e.g. 99.9
+         * @return an upper bound of the latency in nanoseconds at the percentile, or 0 if nothing
+         * was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBoundOf(bucket), max);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param earlier an earlier snapshot of the same histogram
+         * @return the latencies recorded between the earlier snapshot and this one. The maximum
+         * isn't tracked per interval, so the maximum of the difference is the upper bound of its
+         * highest bucket, capped by the maximum of this snapshot.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] difference = new long[counts.length];
+            long differenceMax = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                difference[bucket] = counts[bucket] - earlier.counts[bucket];
+                if (difference[bucket] > 0) {
+                    differenceMax = Math.min(upperBoundOf(bucket), max);
+                }
+            }
+            return new Snapshot(difference, count - earlier.count, sum - earlier.sum,
+                    differenceMax);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + (long) getMean() + "ns, p50="
+                    + getValueAtPercentile(50) + "ns, p99=" + getValueAtPercentile(99)
+                    + "ns, p999=" + getValueAtPercentile(99.9) + "ns, max=" + max + "ns";
+        }
+    }
+}
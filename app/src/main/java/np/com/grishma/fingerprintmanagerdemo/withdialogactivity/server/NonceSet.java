@@ -0,0 +1,179 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.security.SecureRandom;
+
+/**
+ * A set of primitive {@code long} nonces in an open-addressing hash table with linear probing, so
+ * that remembering a nonce costs a table slot instead of a boxed {@link Long} and a hash node.
+ * <p>
+ * The table is kept at most half full and doubles when it runs over. Zero marks an empty slot, a
+ * zero nonce is tracked by a separate flag. Removal shifts the following entries of the probe
+ * sequence back, so no tombstones are needed.
+ * <p>
+ * This class is not thread-safe, {@link ReplayCache} synchronizes on the set.
+ */
+final class NonceSet {
+
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Mixed into the hash, so clients can't pick nonces that all land in the same probe sequence.
+     */
+    private static final long SEED = new SecureRandom().nextLong();
+
+    /** The user the nonces belong to */
+    final String userId;
+
+    /**
+     * Set once the set has been emptied and removed from its {@link ReplayCache}, after which
+     * nonces must be added to a new set instead.
+     */
+    boolean retired;
+
+    private long[] table;
+    private int shift;
+    private int size;
+    private boolean containsZero;
+
+    NonceSet(String userId) {
+        this.userId = userId;
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private int indexOf(long nonce) {
+        return (int) (((nonce ^ SEED) * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * @return true if the nonce was added, false if it was already in the set.
+     */
+    boolean add(long nonce) {
+        if (nonce == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = table.length - 1;
+        int i = indexOf(nonce);
+        long slot;
+        while ((slot = table[i]) != 0) {
+            if (slot == nonce) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = nonce;
+        size++;
+        if (size > table.length >> 1) {
+            resize(table.length << 1);
+        }
+        return true;
+    }
+
+    boolean contains(long nonce) {
+        if (nonce == 0) {
+            return containsZero;
+        }
+        int mask = table.length - 1;
+        int i = indexOf(nonce);
+        long slot;
+        while ((slot = table[i]) != 0) {
+            if (slot == nonce) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the nonce was in the set.
+     */
+    boolean remove(long nonce) {
+        if (nonce == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int mask = table.length - 1;
+        int i = indexOf(nonce);
+        long slot;
+        while ((slot = table[i]) != nonce) {
+            if (slot == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // Shift back the entries after the removed one that would otherwise become unreachable.
+        int hole = i;
+        for (int j = (i + 1) & mask; (slot = table[j]) != 0; j = (j + 1) & mask) {
+            int home = indexOf(slot);
+            // Move the entry if its home isn't cyclically within (hole, j].
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                table[hole] = slot;
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the nonces in the set, in no particular order.
+     */
+    long[] toArray() {
+        long[] nonces = new long[size];
+        int i = 0;
+        if (containsZero) {
+            i++;
+        }
+        for (long nonce : table) {
+            if (nonce != 0) {
+                nonces[i++] = nonce;
+            }
+        }
+        return nonces;
+    }
+
+    /**
+     * @return the length of the backing table, used to estimate the memory of the set.
+     */
+    int tableLength() {
+        return table.length;
+    }
+
+    private void resize(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (long nonce : old) {
+            if (nonce != 0) {
+                int i = indexOf(nonce);
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = nonce;
+            }
+        }
+    }
+}
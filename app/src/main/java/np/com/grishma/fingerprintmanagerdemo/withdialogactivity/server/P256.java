@@ -0,0 +1,540 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.math.BigInteger;
+import java.security.spec.ECField;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+import java.util.Arrays;
+
+/**
+ * ECDSA verification on the NIST P-256 curve (secp256r1) with precomputed tables of multiples of
+ * the generator and of the public key, so a verification takes additions only.
+ * <p>
+ * The {@link Table} of a point P with w bit windows holds d * 2^(w * i) * P for every digit d of
+ * every window i of a scalar. k * P is then the sum of one entry per window: 256 / w additions
+ * instead of the 256 doublings and some 50 additions of a windowed multiplication. The generator
+ * has a table of 8 bit windows, computed once, and public keys have tables of 4 bit windows,
+ * 60 KB each.
+ * <p>
+ * Field elements are 8 little-endian 32 bit limbs in Montgomery form and the points are summed in
+ * Jacobian coordinates, adding the affine entries of the tables. The few operations modulo the
+ * group order per signature are done with {@link BigInteger}.
+ */
+final class P256 {
+
+    static final BigInteger P = new BigInteger(
+            "ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16);
+    static final BigInteger N = new BigInteger(
+            "ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551", 16);
+    private static final BigInteger A = P.subtract(BigInteger.valueOf(3));
+    private static final BigInteger B = new BigInteger(
+            "5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b", 16);
+    private static final ECPoint G = new ECPoint(
+            new BigInteger("6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296", 16),
+            new BigInteger("4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5", 16));
+
+    private static final int LIMBS = 8;
+    private static final long MASK = 0xFFFFFFFFL;
+    private static final int[] P_LIMBS = limbs(P);
+    /** 2^512 mod p, multiplying by it converts to Montgomery form */
+    private static final int[] R2 = limbs(BigInteger.ONE.shiftLeft(512).mod(P));
+    /** 1 in Montgomery form */
+    private static final int[] ONE = limbs(BigInteger.ONE.shiftLeft(256).mod(P));
+    private static final BigInteger P_MINUS_2 = P.subtract(BigInteger.valueOf(2));
+
+    static final int KEY_WINDOW_BITS = 4;
+    private static final int GENERATOR_WINDOW_BITS = 8;
+
+    private P256() {
+    }
+
+    /**
+     * @return true if the parameters are the ones of P-256.
+     */
+    static boolean isP256(ECParameterSpec params) {
+        if (params == null || params.getCofactor() != 1 || !N.equals(params.getOrder())
+                || !G.equals(params.getGenerator())) {
+            return false;
+        }
+        EllipticCurve curve = params.getCurve();
+        ECField field = curve.getField();
+        return field instanceof ECFieldFp && P.equals(((ECFieldFp) field).getP())
+                && A.equals(curve.getA()) && B.equals(curve.getB());
+    }
+
+    /**
+     * @return true if the point is a point of P-256 other than the point at infinity.
+     */
+    static boolean isOnCurve(ECPoint point) {
+        if (point == null || point.equals(ECPoint.POINT_INFINITY)) {
+            return false;
+        }
+        BigInteger x = point.getAffineX();
+        BigInteger y = point.getAffineY();
+        if (x.signum() < 0 || x.compareTo(P) >= 0 || y.signum() < 0 || y.compareTo(P) >= 0) {
+            return false;
+        }
+        BigInteger right = x.multiply(x).add(A).multiply(x).add(B).mod(P);
+        return y.multiply(y).mod(P).equals(right);
+    }
+
+    /**
+     * Verifies an ECDSA signature.
+     *
+     * @param key    the table of the public key
+     * @param digest the SHA-256 digest of the signed data
+     * @param r      the r value of the signature, between 1 and n - 1
+     * @param s      the s value of the signature, between 1 and n - 1
+     * @return true if the signature was verified, false otherwise.
+     */
+    static boolean verify(Table key, byte[] digest, BigInteger r, BigInteger s) {
+        BigInteger w = s.modInverse(N);
+        int[] u1 = limbs(new BigInteger(1, digest).multiply(w).mod(N));
+        int[] u2 = limbs(r.multiply(w).mod(N));
+
+        Calculator calculator = new Calculator();
+        GeneratorTable.INSTANCE.addMultiple(calculator, u1);
+        key.addMultiple(calculator, u2);
+        if (calculator.isInfinity()) {
+            return false;
+        }
+        // The x coordinate of the sum is X / Z^2, so x mod n == r if X == r * Z^2 or, as p > n,
+        // if X == (r + n) * Z^2 and r + n < p.
+        int[] zz = new int[LIMBS];
+        int[] candidate = new int[LIMBS];
+        calculator.mul(zz, calculator.z, calculator.z);
+        calculator.mul(candidate, limbs(r), R2);
+        calculator.mul(candidate, candidate, zz);
+        if (Arrays.equals(candidate, calculator.x)) {
+            return true;
+        }
+        BigInteger rPlusN = r.add(N);
+        if (rPlusN.compareTo(P) >= 0) {
+            return false;
+        }
+        calculator.mul(candidate, limbs(rPlusN), R2);
+        calculator.mul(candidate, candidate, zz);
+        return Arrays.equals(candidate, calculator.x);
+    }
+
+    /**
+     * @return the value as 8 little-endian 32 bit limbs, it must be less than 2^256.
+     */
+    private static int[] limbs(BigInteger value) {
+        int[] limbs = new int[LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            limbs[i] = value.shiftRight(32 * i).intValue();
+        }
+        return limbs;
+    }
+
+    /**
+     * The multiples of a point for all digits of all windows of a scalar, in affine coordinates
+     * in Montgomery form.
+     */
+    static final class Table {
+
+        private final int windowBits;
+        private final int digits;
+        /** The x and y of the entry of digit d of window i start at (i * digits + d - 1) * 16 */
+        private final int[] entries;
+
+        /**
+         * @param point a point of P-256, see {@link #isOnCurve(ECPoint)}
+         */
+        Table(ECPoint point, int windowBits) {
+            if (32 % windowBits != 0) {
+                throw new IllegalArgumentException("Invalid window size: " + windowBits);
+            }
+            this.windowBits = windowBits;
+            digits = (1 << windowBits) - 1;
+            int windows = 256 / windowBits;
+            Calculator calculator = new Calculator();
+
+            // The base of every window, 2^(w * i) * P, in Jacobian coordinates.
+            int[] bases = new int[windows * 3 * LIMBS];
+            int[] base = new int[3 * LIMBS];
+            calculator.mul(base, limbs(point.getAffineX()), R2);
+            int[] y = new int[LIMBS];
+            calculator.mul(y, limbs(point.getAffineY()), R2);
+            System.arraycopy(y, 0, base, LIMBS, LIMBS);
+            System.arraycopy(ONE, 0, base, 2 * LIMBS, LIMBS);
+            calculator.set(base, 0);
+            for (int i = 0; i < windows; i++) {
+                calculator.get(bases, i * 3 * LIMBS);
+                for (int j = 0; j < windowBits; j++) {
+                    calculator.dbl();
+                }
+            }
+            int[] affineBases = calculator.toAffine(bases, windows);
+
+            // d * base for the digits 1 to 2^w - 1 of every window.
+            int[] multiples = new int[windows * digits * 3 * LIMBS];
+            int[] bx = new int[LIMBS];
+            int[] by = new int[LIMBS];
+            for (int i = 0; i < windows; i++) {
+                System.arraycopy(affineBases, i * 2 * LIMBS, bx, 0, LIMBS);
+                System.arraycopy(affineBases, i * 2 * LIMBS + LIMBS, by, 0, LIMBS);
+                calculator.setInfinity();
+                for (int d = 1; d <= digits; d++) {
+                    calculator.madd(bx, by);
+                    calculator.get(multiples, (i * digits + d - 1) * 3 * LIMBS);
+                }
+            }
+            entries = calculator.toAffine(multiples, windows * digits);
+        }
+
+        /**
+         * Adds k * P to the sum of the calculator.
+         *
+         * @param k the scalar as 8 little-endian 32 bit limbs
+         */
+        void addMultiple(Calculator calculator, int[] k) {
+            int[] x = calculator.ax;
+            int[] y = calculator.ay;
+            int windows = 256 / windowBits;
+            for (int i = 0; i < windows; i++) {
+                int bit = i * windowBits;
+                int digit = (k[bit >>> 5] >>> (bit & 31)) & digits;
+                if (digit != 0) {
+                    int offset = (i * digits + digit - 1) * 2 * LIMBS;
+                    System.arraycopy(entries, offset, x, 0, LIMBS);
+                    System.arraycopy(entries, offset + LIMBS, y, 0, LIMBS);
+                    calculator.madd(x, y);
+                }
+            }
+        }
+
+        /**
+         * @return the size of the entries in bytes.
+         */
+        long sizeInBytes() {
+            return entries.length * 4L;
+        }
+    }
+
+    /**
+     * The table of the generator, created the first time a signature is verified.
+     */
+    private static final class GeneratorTable {
+        static final Table INSTANCE = new Table(G, GENERATOR_WINDOW_BITS);
+    }
+
+    /**
+     * Field arithmetic modulo p in Montgomery form and a point in Jacobian coordinates that other
+     * points are added to. Results may be written to one of the operands.
+     */
+    static final class Calculator {
+
+        final int[] x = new int[LIMBS];
+        final int[] y = new int[LIMBS];
+        /** 0 for the point at infinity */
+        final int[] z = new int[LIMBS];
+        /** The coordinates of an affine point to add */
+        final int[] ax = new int[LIMBS];
+        final int[] ay = new int[LIMBS];
+
+        private final long[] t = new long[LIMBS + 1];
+        private final int[] t1 = new int[LIMBS];
+        private final int[] t2 = new int[LIMBS];
+        private final int[] t3 = new int[LIMBS];
+        private final int[] t4 = new int[LIMBS];
+        private final int[] t5 = new int[LIMBS];
+        private final int[] t6 = new int[LIMBS];
+        private final int[] t7 = new int[LIMBS];
+
+        /**
+         * r = a * b / 2^256 mod p, the Montgomery multiplication with 32 bit words. -p^-1 is 1
+         * modulo 2^32, so the multiple of p to add in every round is the lowest word itself.
+         */
+        void mul(int[] r, int[] a, int[] b) {
+            long[] t = this.t;
+            Arrays.fill(t, 0);
+            for (int i = 0; i < LIMBS; i++) {
+                long bi = b[i] & MASK;
+                long carry = 0;
+                for (int j = 0; j < LIMBS; j++) {
+                    long sum = t[j] + (a[j] & MASK) * bi + carry;
+                    t[j] = sum & MASK;
+                    carry = sum >>> 32;
+                }
+                long sum = t[LIMBS] + carry;
+                t[LIMBS] = sum & MASK;
+                long top = sum >>> 32;
+
+                long m = t[0];
+                carry = (t[0] + m * (P_LIMBS[0] & MASK)) >>> 32;
+                for (int j = 1; j < LIMBS; j++) {
+                    sum = t[j] + m * (P_LIMBS[j] & MASK) + carry;
+                    t[j - 1] = sum & MASK;
+                    carry = sum >>> 32;
+                }
+                sum = t[LIMBS] + carry;
+                t[LIMBS - 1] = sum & MASK;
+                t[LIMBS] = top + (sum >>> 32);
+            }
+            // t < 2p, subtract p once if needed.
+            long borrow = 0;
+            for (int j = 0; j < LIMBS; j++) {
+                long difference = t[j] - (P_LIMBS[j] & MASK) - borrow;
+                r[j] = (int) difference;
+                borrow = difference >>> 63;
+            }
+            if (t[LIMBS] - borrow < 0) {
+                for (int j = 0; j < LIMBS; j++) {
+                    r[j] = (int) t[j];
+                }
+            }
+        }
+
+        /**
+         * r = a + b mod p
+         */
+        void add(int[] r, int[] a, int[] b) {
+            long carry = 0;
+            for (int j = 0; j < LIMBS; j++) {
+                long sum = (a[j] & MASK) + (b[j] & MASK) + carry;
+                r[j] = (int) sum;
+                carry = sum >>> 32;
+            }
+            if (carry != 0 || !lessThanP(r)) {
+                subtractP(r);
+            }
+        }
+
+        /**
+         * r = a - b mod p
+         */
+        void sub(int[] r, int[] a, int[] b) {
+            long borrow = 0;
+            for (int j = 0; j < LIMBS; j++) {
+                long difference = (a[j] & MASK) - (b[j] & MASK) - borrow;
+                r[j] = (int) difference;
+                borrow = difference >>> 63;
+            }
+            if (borrow != 0) {
+                long carry = 0;
+                for (int j = 0; j < LIMBS; j++) {
+                    long sum = (r[j] & MASK) + (P_LIMBS[j] & MASK) + carry;
+                    r[j] = (int) sum;
+                    carry = sum >>> 32;
+                }
+            }
+        }
+
+        private static boolean lessThanP(int[] a) {
+            for (int j = LIMBS - 1; j >= 0; j--) {
+                long aj = a[j] & MASK;
+                long pj = P_LIMBS[j] & MASK;
+                if (aj != pj) {
+                    return aj < pj;
+                }
+            }
+            return false;
+        }
+
+        private static void subtractP(int[] r) {
+            long borrow = 0;
+            for (int j = 0; j < LIMBS; j++) {
+                long difference = (r[j] & MASK) - (P_LIMBS[j] & MASK) - borrow;
+                r[j] = (int) difference;
+                borrow = difference >>> 63;
+            }
+        }
+
+        private static boolean isZero(int[] a) {
+            int bits = 0;
+            for (int limb : a) {
+                bits |= limb;
+            }
+            return bits == 0;
+        }
+
+        /**
+         * r = a^-1 mod p as a^(p - 2), the inverse of 0 is 0.
+         */
+        void invert(int[] r, int[] a) {
+            int[] result = ONE.clone();
+            int[] base = a.clone();
+            for (int bit = P_MINUS_2.bitLength() - 1; bit >= 0; bit--) {
+                mul(result, result, result);
+                if (P_MINUS_2.testBit(bit)) {
+                    mul(result, result, base);
+                }
+            }
+            System.arraycopy(result, 0, r, 0, LIMBS);
+        }
+
+        boolean isInfinity() {
+            return isZero(z);
+        }
+
+        void setInfinity() {
+            Arrays.fill(z, 0);
+        }
+
+        /**
+         * Sets the point to the Jacobian coordinates at the offset of the array.
+         */
+        void set(int[] points, int offset) {
+            System.arraycopy(points, offset, x, 0, LIMBS);
+            System.arraycopy(points, offset + LIMBS, y, 0, LIMBS);
+            System.arraycopy(points, offset + 2 * LIMBS, z, 0, LIMBS);
+        }
+
+        /**
+         * Copies the Jacobian coordinates of the point to the offset of the array.
+         */
+        void get(int[] points, int offset) {
+            System.arraycopy(x, 0, points, offset, LIMBS);
+            System.arraycopy(y, 0, points, offset + LIMBS, LIMBS);
+            System.arraycopy(z, 0, points, offset + 2 * LIMBS, LIMBS);
+        }
+
+        /**
+         * Doubles the point, with the dbl-2001-b formulas for a = -3.
+         */
+        void dbl() {
+            if (isInfinity()) {
+                return;
+            }
+            int[] delta = t1;
+            int[] gamma = t2;
+            int[] beta = t3;
+            int[] alpha = t4;
+            mul(delta, z, z);
+            mul(gamma, y, y);
+            mul(beta, x, gamma);
+            sub(t5, x, delta);
+            add(t6, x, delta);
+            mul(alpha, t5, t6);
+            add(t5, alpha, alpha);
+            add(alpha, t5, alpha);
+            // Z3 = (Y1 + Z1)^2 - gamma - delta
+            add(t5, y, z);
+            mul(t5, t5, t5);
+            sub(t5, t5, gamma);
+            sub(z, t5, delta);
+            // X3 = alpha^2 - 8 * beta
+            add(beta, beta, beta);
+            add(beta, beta, beta);
+            add(t5, beta, beta);
+            mul(x, alpha, alpha);
+            sub(x, x, t5);
+            // Y3 = alpha * (4 * beta - X3) - 8 * gamma^2
+            sub(t5, beta, x);
+            mul(t5, alpha, t5);
+            mul(gamma, gamma, gamma);
+            add(gamma, gamma, gamma);
+            add(gamma, gamma, gamma);
+            add(gamma, gamma, gamma);
+            sub(y, t5, gamma);
+        }
+
+        /**
+         * Adds an affine point, which must not be the point at infinity, with the madd-2007-bl
+         * formulas. Adding the point itself or its negation is handled too.
+         */
+        void madd(int[] x2, int[] y2) {
+            if (isInfinity()) {
+                System.arraycopy(x2, 0, x, 0, LIMBS);
+                System.arraycopy(y2, 0, y, 0, LIMBS);
+                System.arraycopy(ONE, 0, z, 0, LIMBS);
+                return;
+            }
+            int[] z1z1 = t1;
+            int[] h = t2;
+            int[] r = t3;
+            int[] hh = t4;
+            int[] i = t5;
+            int[] j = t6;
+            int[] v = t7;
+            mul(z1z1, z, z);
+            // H = x2 * Z1Z1 - X1, r = 2 * (y2 * Z1 * Z1Z1 - Y1)
+            mul(h, x2, z1z1);
+            sub(h, h, x);
+            mul(r, y2, z);
+            mul(r, r, z1z1);
+            sub(r, r, y);
+            if (isZero(h)) {
+                if (isZero(r)) {
+                    dbl();
+                } else {
+                    setInfinity();
+                }
+                return;
+            }
+            add(r, r, r);
+            mul(hh, h, h);
+            add(i, hh, hh);
+            add(i, i, i);
+            mul(j, h, i);
+            mul(v, x, i);
+            // Z3 = (Z1 + H)^2 - Z1Z1 - HH
+            add(z, z, h);
+            mul(z, z, z);
+            sub(z, z, z1z1);
+            sub(z, z, hh);
+            // X3 = r^2 - J - 2 * V
+            mul(x, r, r);
+            sub(x, x, j);
+            sub(x, x, v);
+            sub(x, x, v);
+            // Y3 = r * (V - X3) - 2 * Y1 * J
+            sub(v, v, x);
+            mul(v, r, v);
+            mul(j, y, j);
+            add(j, j, j);
+            sub(y, v, j);
+        }
+
+        /**
+         * Converts points from Jacobian to affine coordinates with a single inversion, by
+         * Montgomery's trick. None of the points may be the point at infinity.
+         *
+         * @param points the Jacobian coordinates of the points, 24 limbs each
+         * @return the affine coordinates of the points, 16 limbs each.
+         */
+        int[] toAffine(int[] points, int count) {
+            // products[k] = Z0 * ... * Zk
+            int[] products = new int[count * LIMBS];
+            int[] product = new int[LIMBS];
+            int[] zk = new int[LIMBS];
+            System.arraycopy(ONE, 0, product, 0, LIMBS);
+            for (int k = 0; k < count; k++) {
+                System.arraycopy(points, k * 3 * LIMBS + 2 * LIMBS, zk, 0, LIMBS);
+                mul(product, product, zk);
+                System.arraycopy(product, 0, products, k * LIMBS, LIMBS);
+            }
+            int[] inverse = new int[LIMBS];
+            invert(inverse, product);
+
+            int[] affine = new int[count * 2 * LIMBS];
+            int[] zInverse = new int[LIMBS];
+            int[] previous = new int[LIMBS];
+            int[] coordinate = new int[LIMBS];
+            for (int k = count - 1; k >= 0; k--) {
+                System.arraycopy(points, k * 3 * LIMBS + 2 * LIMBS, zk, 0, LIMBS);
+                if (k > 0) {
+                    System.arraycopy(products, (k - 1) * LIMBS, previous, 0, LIMBS);
+                    mul(zInverse, inverse, previous);
+                    mul(inverse, inverse, zk);
+                } else {
+                    System.arraycopy(inverse, 0, zInverse, 0, LIMBS);
+                }
+                int[] zInverse2 = t1;
+                mul(zInverse2, zInverse, zInverse);
+                System.arraycopy(points, k * 3 * LIMBS, coordinate, 0, LIMBS);
+                mul(coordinate, coordinate, zInverse2);
+                System.arraycopy(coordinate, 0, affine, k * 2 * LIMBS, LIMBS);
+                System.arraycopy(points, k * 3 * LIMBS + LIMBS, coordinate, 0, LIMBS);
+                mul(zInverse2, zInverse2, zInverse);
+                mul(coordinate, coordinate, zInverse2);
+                System.arraycopy(coordinate, 0, affine, k * 2 * LIMBS + LIMBS, LIMBS);
+            }
+            return affine;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECPoint;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link SignatureVerifier} for SHA256withECDSA that verifies the signatures of hot P-256 keys
+ * with precomputed tables (see {@link P256}) and leaves everything else to the JCA engine of
+ * {@link SignatureVerifier}.
+ * <p>
+ * The tables of up to {@code maxCachedKeys} keys are kept, about 60 KB each. While there is room,
+ * the table of a key is built when the key is enrolled, see {@link #prepare(PublicKey)}.
+ * Signatures of keys without a table are verified by the JCA engine, and a key gets a table once
+ * two of its signatures have been verified there. When the cache is full that evicts a key that
+ * hasn't been used since the last eviction pass (the second chance of the CLOCK algorithm). An
+ * enrollment never evicts, so enrolling many users doesn't push out the hot keys, and keys that
+ * are only used now and then don't either. Building a table costs a few verifications, on the
+ * thread that enrolls or verifies.
+ * <p>
+ * Only signatures in strict DER encoding with r and s between 1 and n - 1 are verified with the
+ * tables. The JCA engine decides about all others, so they are accepted or rejected exactly as
+ * before.
+ */
+public class P256SignatureVerifier extends SignatureVerifier {
+
+    /** The default number of keys whose tables are kept, about 15 MB */
+    public static final int DEFAULT_MAX_CACHED_KEYS = 256;
+
+    private final int maxCachedKeys;
+    private final ConcurrentMap<ECPoint, CachedTable> tables = new ConcurrentHashMap<>();
+    /** The keys verified by the JCA engine once since the set was last cleared */
+    private final ConcurrentMap<ECPoint, Boolean> candidates = new ConcurrentHashMap<>();
+    private final ThreadLocal<MessageDigest> digests = new ThreadLocal<>();
+
+    public P256SignatureVerifier() {
+        this(DEFAULT_MAX_CACHED_KEYS);
+    }
+
+    /**
+     * @param maxCachedKeys the number of keys whose tables are kept
+     */
+    public P256SignatureVerifier(int maxCachedKeys) {
+        super("SHA256withECDSA");
+        if (maxCachedKeys < 1) {
+            throw new IllegalArgumentException("maxCachedKeys must be positive: "
+                    + maxCachedKeys);
+        }
+        this.maxCachedKeys = maxCachedKeys;
+    }
+
+    /**
+     * Builds the table of the key if it is a P-256 key that has none yet and the cache has room for
+     * it. Otherwise the key gets its table like any other key once it is used.
+     */
+    @Override
+    public void prepare(PublicKey publicKey) {
+        ECPoint point = p256PointOf(publicKey);
+        if (point != null && tables.size() < maxCachedKeys && !tables.containsKey(point)
+                && P256.isOnCurve(point)) {
+            tables.putIfAbsent(point,
+                    new CachedTable(new P256.Table(point, P256.KEY_WINDOW_BITS)));
+        }
+    }
+
+    @Override
+    public boolean verify(PublicKey publicKey, byte[] data, byte[] signature)
+            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        ECPoint point = p256PointOf(publicKey);
+        CachedTable table = point != null ? tables.get(point) : null;
+        if (table != null) {
+            BigInteger[] rs = decodeSignature(ByteBuffer.wrap(signature));
+            if (rs != null) {
+                MessageDigest digest = getDigest();
+                digest.update(data);
+                return table.verify(digest.digest(), rs[0], rs[1]);
+            }
+        }
+        boolean verified = super.verify(publicKey, data, signature);
+        if (verified && point != null && table == null) {
+            onVerifiedWithoutTable(point);
+        }
+        return verified;
+    }
+
+    @Override
+    public boolean verify(PublicKey publicKey, ByteBuffer data, ByteBuffer signature)
+            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        ECPoint point = p256PointOf(publicKey);
+        CachedTable table = point != null ? tables.get(point) : null;
+        if (table != null) {
+            BigInteger[] rs = decodeSignature(signature);
+            if (rs != null) {
+                MessageDigest digest = getDigest();
+                digest.update(data.duplicate());
+                return table.verify(digest.digest(), rs[0], rs[1]);
+            }
+        }
+        boolean verified = super.verify(publicKey, data, signature);
+        if (verified && point != null && table == null) {
+            onVerifiedWithoutTable(point);
+        }
+        return verified;
+    }
+
+    /**
+     * @return true if the table of the key is cached.
+     */
+    boolean isCached(PublicKey publicKey) {
+        ECPoint point = p256PointOf(publicKey);
+        return point != null && tables.containsKey(point);
+    }
+
+    /**
+     * @return the point of the key if it is a valid P-256 key, null otherwise.
+     */
+    private static ECPoint p256PointOf(PublicKey publicKey) {
+        if (!(publicKey instanceof ECPublicKey)) {
+            return null;
+        }
+        ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
+        return P256.isP256(ecPublicKey.getParams()) ? ecPublicKey.getW() : null;
+    }
+
+    private void onVerifiedWithoutTable(ECPoint point) {
+        if (candidates.remove(point) != null) {
+            cache(point);
+            return;
+        }
+        if (candidates.size() >= maxCachedKeys) {
+            candidates.clear();
+        }
+        candidates.put(point, Boolean.TRUE);
+    }
+
+    private void cache(ECPoint point) {
+        // Keys that aren't on the curve are left to the JCA engine to reject.
+        if (!P256.isOnCurve(point)) {
+            return;
+        }
+        CachedTable table = new CachedTable(new P256.Table(point, P256.KEY_WINDOW_BITS));
+        makeRoom();
+        tables.putIfAbsent(point, table);
+    }
+
+    /**
+     * Evicts tables until there is room for one more, sparing the ones used since the last pass.
+     * Concurrent callers may overshoot the limit by a table each.
+     */
+    private void makeRoom() {
+        for (int pass = 0; pass < 2 && tables.size() >= maxCachedKeys; pass++) {
+            Iterator<CachedTable> iterator = tables.values().iterator();
+            while (iterator.hasNext() && tables.size() >= maxCachedKeys) {
+                CachedTable table = iterator.next();
+                if (table.referenced) {
+                    table.referenced = false;
+                } else {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private MessageDigest getDigest() throws NoSuchAlgorithmException {
+        MessageDigest digest = digests.get();
+        if (digest == null) {
+            digest = MessageDigest.getInstance("SHA-256");
+            digests.set(digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Decodes a signature in strict DER encoding, a sequence of the integers r and s.
+     *
+     * @return r and s, or null if the encoding isn't strict DER or r or s isn't between 1 and
+     * n - 1.
+     */
+    static BigInteger[] decodeSignature(ByteBuffer signature) {
+        ByteBuffer in = signature.duplicate();
+        if (in.remaining() < 2 || in.get() != 0x30) {
+            return null;
+        }
+        int length = in.get() & 0xFF;
+        // A signature of P-256 is at most 72 bytes, so its length always fits the short form.
+        if (length >= 0x80 || length != in.remaining()) {
+            return null;
+        }
+        BigInteger r = readInteger(in);
+        BigInteger s = readInteger(in);
+        if (r == null || s == null || in.hasRemaining() || !inRange(r) || !inRange(s)) {
+            return null;
+        }
+        return new BigInteger[]{r, s};
+    }
+
+    private static BigInteger readInteger(ByteBuffer in) {
+        if (in.remaining() < 2 || in.get() != 0x02) {
+            return null;
+        }
+        int length = in.get() & 0xFF;
+        if (length == 0 || length > 33 || length > in.remaining()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        // Negative, or a leading zero that isn't needed for the sign.
+        if (bytes[0] < 0 || (bytes[0] == 0 && length > 1 && bytes[1] >= 0)) {
+            return null;
+        }
+        return new BigInteger(bytes);
+    }
+
+    private static boolean inRange(BigInteger value) {
+        return value.signum() > 0 && value.compareTo(P256.N) < 0;
+    }
+
+    private static final class CachedTable {
+
+        final P256.Table table;
+        /** Set on every use, cleared by an eviction pass */
+        volatile boolean referenced = true;
+
+        CachedTable(P256.Table table) {
+            this.table = table;
+        }
+
+        boolean verify(byte[] digest, BigInteger r, BigInteger s) {
+            if (!referenced) {
+                referenced = true;
+            }
+            return P256.verify(table, digest, r, s);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link StoreBackend} that shards the users across independent {@link StoreBackendImpl}
+ * partitions, each with its own keys, replay cache and locks.
+ * <p>
+ * Users are assigned to partitions by a {@link ConsistentHashRing} over their user IDs, so all
+ * requests of a user go to the same partition and its replay cache sees all of the user's nonces.
+ * When a partition is added or removed only the users whose arcs of the ring change hands move,
+ * about {@code 1 / partitions} of them, and their state is moved along with them (see
+ * {@link StoreBackendImpl#moveUserTo}), so their keys stay enrolled and their remembered nonces
+ * are still rejected as replays.
+ * <p>
+ * Requests hold a read lock of one of {@value #LOCK_STRIPES} stripes, picked by the hash of the
+ * user ID, while they are routed and handled. Adding or removing a partition takes all write
+ * locks, so requests wait while users move and never see a user half moved.
+ */
+public class PartitionedStoreBackend implements StoreBackend {
+
+    /** The default number of points of every partition on the ring. */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReadWriteLock[] locks = new ReadWriteLock[LOCK_STRIPES];
+    private volatile ConsistentHashRing<StoreBackendImpl> ring;
+
+    public PartitionedStoreBackend() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param virtualNodes the number of points of every partition on the ring, more points spread
+     *                     the users more evenly
+     */
+    public PartitionedStoreBackend(int virtualNodes) {
+        ring = new ConsistentHashRing<>(virtualNodes);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Adds a partition and moves the users that now belong to it from the other partitions.
+     *
+     * @param name      the name of the partition, which decides its place on the ring
+     * @param partition the backend of the partition, it must not be shared with other partitions
+     * @throws IllegalArgumentException if there is a partition with the name already
+     */
+    public void addPartition(String name, StoreBackendImpl partition) throws IOException {
+        lockAll();
+        try {
+            if (ring.getNodes().containsKey(name)) {
+                throw new IllegalArgumentException("Partition " + name + " exists already");
+            }
+            rebalance(ring.withNode(name, partition));
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Removes a partition and moves its users to the remaining partitions.
+     *
+     * @return the backend of the removed partition, or null if there is no partition with the
+     * name.
+     * @throws IllegalStateException if it is the last partition and it holds users
+     */
+    public StoreBackendImpl removePartition(String name) throws IOException {
+        lockAll();
+        try {
+            StoreBackendImpl partition = ring.getNodes().get(name);
+            if (partition == null) {
+                return null;
+            }
+            if (ring.getNodes().size() == 1 && !partition.getUserIds().isEmpty()) {
+                throw new IllegalStateException("Can't remove the last partition");
+            }
+            rebalance(ring.withoutNode(name));
+            return partition;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * @return the partitions by their names, in the order they were added.
+     */
+    public Map<String, StoreBackendImpl> getPartitions() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Moves every user whose partition differs between the current and the new ring, then
+     * switches to the new ring. Must be called with all write locks held.
+     */
+    private void rebalance(ConsistentHashRing<StoreBackendImpl> newRing) throws IOException {
+        ConsistentHashRing<StoreBackendImpl> oldRing = ring;
+        for (StoreBackendImpl partition : oldRing.getNodes().values()) {
+            for (String userId : partition.getUserIds()) {
+                // A partition can still have a stale record of a user that has moved away
+                // before, only the current owner's state is moved.
+                if (oldRing.get(userId) != partition) {
+                    continue;
+                }
+                StoreBackendImpl owner = newRing.get(userId);
+                if (owner != partition) {
+                    partition.moveUserTo(userId, owner);
+                }
+            }
+        }
+        ring = newRing;
+    }
+
+    private void lockAll() {
+        for (ReadWriteLock lock : locks) {
+            lock.writeLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    private ReadWriteLock lockOf(long userIdHash) {
+        return locks[(int) (userIdHash >>> 58)];
+    }
+
+    /**
+     * @throws IllegalStateException if there are no partitions
+     */
+    private StoreBackendImpl partitionOf(long userIdHash) {
+        StoreBackendImpl partition = ring.get(userIdHash);
+        if (partition == null) {
+            throw new IllegalStateException("No partitions");
+        }
+        return partition;
+    }
+
+    @Override
+    public boolean verify(Transaction transaction, byte[] transactionSignature) {
+        return verifyWithOutcome(transaction, transactionSignature) == VerifyOutcome.ACCEPTED;
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(Transaction transaction, byte[] transactionSignature) {
+        long hash = ConsistentHashRing.hash(transaction.getUserId());
+        ReadWriteLock lock = lockOf(hash);
+        lock.readLock().lock();
+        try {
+            return partitionOf(hash).verifyWithOutcome(transaction, transactionSignature);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(ByteBuffer signedTransaction,
+                                           ByteBuffer transactionSignature) {
+        TransactionCodec.checkPayload(signedTransaction);
+        long hash = ConsistentHashRing.hash(TransactionCodec.readUserId(signedTransaction));
+        ReadWriteLock lock = lockOf(hash);
+        lock.readLock().lock();
+        try {
+            return partitionOf(hash).verifyWithOutcome(signedTransaction, transactionSignature);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(CartTransaction cart, byte[] cartSignature) {
+        long hash = ConsistentHashRing.hash(cart.getUserId());
+        ReadWriteLock lock = lockOf(hash);
+        lock.readLock().lock();
+        try {
+            return partitionOf(hash).verifyWithOutcome(cart, cartSignature);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits the batch by partition and verifies each part on its partition. The whole batch is
+     * routed with the same ring, so it holds the read locks of all stripes meanwhile.
+     */
+    @Override
+    public VerifyOutcome[] verifyAll(Transaction[] transactions, byte[][] transactionSignatures) {
+        if (transactions.length != transactionSignatures.length) {
+            throw new IllegalArgumentException("Got " + transactions.length + " transactions but "
+                    + transactionSignatures.length + " signatures");
+        }
+        for (ReadWriteLock lock : locks) {
+            lock.readLock().lock();
+        }
+        try {
+            Map<StoreBackendImpl, List<Integer>> parts = new IdentityHashMap<>();
+            for (int i = 0; i < transactions.length; i++) {
+                StoreBackendImpl partition =
+                        partitionOf(ConsistentHashRing.hash(transactions[i].getUserId()));
+                List<Integer> part = parts.get(partition);
+                if (part == null) {
+                    part = new ArrayList<>();
+                    parts.put(partition, part);
+                }
+                part.add(i);
+            }
+            VerifyOutcome[] results = new VerifyOutcome[transactions.length];
+            for (Map.Entry<StoreBackendImpl, List<Integer>> part : parts.entrySet()) {
+                List<Integer> indices = part.getValue();
+                Transaction[] partTransactions = new Transaction[indices.size()];
+                byte[][] partSignatures = new byte[indices.size()][];
+                for (int i = 0; i < partTransactions.length; i++) {
+                    partTransactions[i] = transactions[indices.get(i)];
+                    partSignatures[i] = transactionSignatures[indices.get(i)];
+                }
+                VerifyOutcome[] partResults =
+                        part.getKey().verifyAll(partTransactions, partSignatures);
+                for (int i = 0; i < partResults.length; i++) {
+                    results[indices.get(i)] = partResults[i];
+                }
+            }
+            return results;
+        } finally {
+            for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+                locks[i].readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean verify(Transaction transaction, String password) {
+        long hash = ConsistentHashRing.hash(transaction.getUserId());
+        ReadWriteLock lock = lockOf(hash);
+        lock.readLock().lock();
+        try {
+            return partitionOf(hash).verify(transaction, password);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, PublicKey publicKey) {
+        long hash = ConsistentHashRing.hash(userId);
+        ReadWriteLock lock = lockOf(hash);
+        lock.readLock().lock();
+        try {
+            return partitionOf(hash).enroll(userId, password, publicKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, String keyAlgorithm,
+                          byte[] encodedPublicKey) {
+        long hash = ConsistentHashRing.hash(userId);
+        ReadWriteLock lock = lockOf(hash);
+        lock.readLock().lock();
+        try {
+            return partitionOf(hash).enroll(userId, password, keyAlgorithm, encodedPublicKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Derives salted password hashes with PBKDF2, so the backend never stores passwords in plain text.
+ * <p>
+ * PBKDF2WithHmacSHA1 is used because it is the strongest variant available on every Android
+ * version the app supports. The cost is set by the number of iterations; every {@link PasswordHash}
+ * remembers the iterations it was derived with, so the cost can be raised for new enrollments
+ * without invalidating the existing hashes. Hashing is deliberately slow, callers are expected to
+ * run it off their request threads (see {@link StoreBackendImpl}).
+ */
+public class PasswordHasher {
+
+    /** The default number of PBKDF2 iterations. */
+    public static final int DEFAULT_ITERATIONS = 20_000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<SecretKeyFactory> keyFactories = new ThreadLocal<>();
+
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param iterations the number of PBKDF2 iterations of new hashes
+     */
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * @return the hash of the password with a new random salt.
+     */
+    public PasswordHash hash(String password) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return new PasswordHash(salt, iterations, derive(password, salt, iterations));
+    }
+
+    /**
+     * @return true if the password is the one the hash was derived from.
+     */
+    public boolean verify(String password, PasswordHash hash) throws GeneralSecurityException {
+        byte[] derived = derive(password, hash.salt, hash.iterations);
+        // Compare in constant time, so the time taken doesn't leak how much of the hash matched.
+        return MessageDigest.isEqual(derived, hash.hash);
+    }
+
+    private byte[] derive(String password, byte[] salt, int iterations)
+            throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations,
+                HASH_LENGTH_BITS);
+        try {
+            return getKeyFactory().generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private SecretKeyFactory getKeyFactory() throws NoSuchAlgorithmException {
+        SecretKeyFactory keyFactory = keyFactories.get();
+        if (keyFactory == null) {
+            keyFactory = SecretKeyFactory.getInstance(ALGORITHM);
+            keyFactories.set(keyFactory);
+        }
+        return keyFactory;
+    }
+
+    /**
+     * A salted password hash and the number of iterations it was derived with.
+     */
+    public static final class PasswordHash {
+
+        private final byte[] salt;
+        private final int iterations;
+        private final byte[] hash;
+
+        PasswordHash(byte[] salt, int iterations, byte[] hash) {
+            this.salt = salt;
+            this.iterations = iterations;
+            this.hash = hash;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+    }
+}
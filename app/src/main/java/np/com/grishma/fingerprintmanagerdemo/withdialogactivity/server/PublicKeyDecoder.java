@@ -0,0 +1,123 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decodes X.509 encoded public keys, as sent by clients on enrollment.
+ * <p>
+ * {@link KeyFactory} instances are created once per algorithm and thread. Decoded keys are kept in
+ * a bounded least recently used cache keyed by their encoding, so enrolling the same key again,
+ * as happens when clients re-enroll after their keys were invalidated, neither parses it again nor
+ * creates another {@link PublicKey} instance: identical encodings map to the same instance.
+ */
+public class PublicKeyDecoder {
+
+    /** The default number of decoded keys to keep. */
+    public static final int DEFAULT_MAX_CACHED_KEYS = 10_000;
+
+    private final ThreadLocal<Map<String, KeyFactory>> keyFactories = new ThreadLocal<>();
+    private final Map<EncodedKey, PublicKey> decodedKeys;
+
+    public PublicKeyDecoder() {
+        this(DEFAULT_MAX_CACHED_KEYS);
+    }
+
+    /**
+     * @param maxCachedKeys the maximum number of decoded keys to keep
+     */
+    public PublicKeyDecoder(final int maxCachedKeys) {
+        decodedKeys = new LinkedHashMap<EncodedKey, PublicKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EncodedKey, PublicKey> eldest) {
+                return size() > maxCachedKeys;
+            }
+        };
+    }
+
+    /**
+     * @param algorithm        the standard name of the key algorithm, e.g. "EC"
+     * @param encodedPublicKey the X.509 encoding of the key, it must not be modified afterwards
+     * @return the decoded key.
+     * @throws NoSuchAlgorithmException if the algorithm is null or not supported
+     */
+    public PublicKey decode(String algorithm, byte[] encodedPublicKey)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        if (algorithm == null) {
+            throw new NoSuchAlgorithmException("No key algorithm given");
+        }
+        EncodedKey encodedKey = new EncodedKey(algorithm, encodedPublicKey);
+        synchronized (decodedKeys) {
+            PublicKey publicKey = decodedKeys.get(encodedKey);
+            if (publicKey != null) {
+                return publicKey;
+            }
+        }
+        // Decode outside of the lock, if two threads race for the same key the first one wins.
+        PublicKey decoded = getKeyFactory(algorithm)
+                .generatePublic(new X509EncodedKeySpec(encodedPublicKey));
+        synchronized (decodedKeys) {
+            PublicKey publicKey = decodedKeys.get(encodedKey);
+            if (publicKey != null) {
+                return publicKey;
+            }
+            decodedKeys.put(encodedKey, decoded);
+            return decoded;
+        }
+    }
+
+    private KeyFactory getKeyFactory(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, KeyFactory> factories = keyFactories.get();
+        if (factories == null) {
+            factories = new HashMap<>();
+            keyFactories.set(factories);
+        }
+        KeyFactory keyFactory = factories.get(algorithm);
+        if (keyFactory == null) {
+            keyFactory = KeyFactory.getInstance(algorithm);
+            factories.put(algorithm, keyFactory);
+        }
+        return keyFactory;
+    }
+
+    /**
+     * The cache key: the algorithm and the encoding of a public key.
+     */
+    private static final class EncodedKey {
+
+        private final String algorithm;
+        private final byte[] encoded;
+        private final int hash;
+
+        EncodedKey(String algorithm, byte[] encoded) {
+            this.algorithm = algorithm;
+            this.encoded = encoded;
+            hash = 31 * algorithm.hashCode() + Arrays.hashCode(encoded);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            EncodedKey that = (EncodedKey) o;
+            return hash == that.hash && algorithm.equals(that.algorithm)
+                    && Arrays.equals(encoded, that.encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
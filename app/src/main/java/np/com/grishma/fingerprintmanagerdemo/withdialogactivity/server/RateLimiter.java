@@ -0,0 +1,186 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per user and for all users together, which {@link StoreBackendImpl} asks before
+ * it spends any work on a verification, so a flood of forged signatures costs a map lookup and a
+ * compare-and-set per request instead of a signature check.
+ * <p>
+ * Every bucket is a single {@link AtomicLong} holding the time at which it will be full again
+ * (the generic cell rate algorithm, which is equivalent to a token bucket). Taking a token moves
+ * that time one interval into the future with a compare-and-set, and fails without changing
+ * anything if it would move further than the burst allows. No lock is taken anywhere.
+ * <p>
+ * A request first takes a token of its user and then one of the global bucket, so a user who is
+ * over their limit doesn't use up the tokens of everybody else. A request rejected by the global
+ * bucket has still used the token of its user.
+ * <p>
+ * Buckets that have been full for longer than the idle timeout are dropped by {@link #sweep()},
+ * which the owner of the limiter runs on a background thread every {@link #getIdleNanos()}, so no
+ * request ever waits for a walk over all buckets. Dropping a full bucket loses nothing, the next
+ * request of the user creates a full one again. A swept bucket is marked before it is removed, so a
+ * request that looked it up concurrently retries with the new bucket instead of taking a token
+ * from the dropped one. To bound the memory a flood of made-up user IDs can take, at most
+ * {@code maxUsers} buckets are kept; requests of further users are only limited by the global
+ * bucket until the next sweep makes room.
+ */
+public class RateLimiter {
+
+    /** The default time after which a full bucket is dropped */
+    public static final long DEFAULT_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** The default maximum number of users with a bucket */
+    public static final int DEFAULT_MAX_USERS = 1_000_000;
+
+    /** The state of a bucket that has been dropped by a sweep */
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final long userInterval;
+    private final long userTolerance;
+    private final long globalInterval;
+    private final long globalTolerance;
+    private final long idleNanos;
+    private final int maxUsers;
+    private final ConcurrentMap<String, AtomicLong> userBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong globalBucket;
+
+    /**
+     * @param userRate    the sustained verifications per second of a single user
+     * @param userBurst   the verifications a user can make at once after being idle
+     * @param globalRate  the sustained verifications per second of all users together,
+     *                    {@link Double#POSITIVE_INFINITY} for no global limit
+     * @param globalBurst the verifications all users can make at once after being idle
+     */
+    public RateLimiter(double userRate, int userBurst, double globalRate, int globalBurst) {
+        this(userRate, userBurst, globalRate, globalBurst, DEFAULT_IDLE_NANOS, DEFAULT_MAX_USERS);
+    }
+
+    /**
+     * @param idleNanos the time after which a full bucket is dropped
+     * @param maxUsers  the maximum number of users with a bucket
+     * @see #RateLimiter(double, int, double, int)
+     */
+    public RateLimiter(double userRate, int userBurst, double globalRate, int globalBurst,
+                       long idleNanos, int maxUsers) {
+        if (!(userRate > 0) || !(globalRate > 0) || userBurst < 1 || globalBurst < 1) {
+            throw new IllegalArgumentException("Rates and bursts must be positive");
+        }
+        if (idleNanos <= 0 || maxUsers <= 0) {
+            throw new IllegalArgumentException("idleNanos and maxUsers must be positive");
+        }
+        userInterval = interval(userRate);
+        userTolerance = (userBurst - 1) * userInterval;
+        globalInterval = interval(globalRate);
+        globalTolerance = (globalBurst - 1) * globalInterval;
+        this.idleNanos = idleNanos;
+        this.maxUsers = maxUsers;
+        globalBucket = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return the nanoseconds between two tokens, at least 1 so a bucket always fills up again.
+     */
+    private static long interval(double rate) {
+        if (Double.isInfinite(rate)) {
+            return 0;
+        }
+        return Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+    }
+
+    /**
+     * Takes a token of the user and of the global bucket.
+     *
+     * @return true if the user may go ahead, false if the request is over the limit.
+     */
+    public boolean tryAcquire(String userId) {
+        return tryAcquire(userId, System.nanoTime());
+    }
+
+    boolean tryAcquire(String userId, long now) {
+        while (true) {
+            AtomicLong bucket = userBuckets.get(userId);
+            if (bucket == null) {
+                if (userBuckets.size() >= maxUsers) {
+                    break;
+                }
+                AtomicLong created = new AtomicLong(now);
+                bucket = userBuckets.putIfAbsent(userId, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+            int taken = take(bucket, userInterval, userTolerance, now);
+            if (taken == 0) {
+                return false;
+            }
+            if (taken > 0) {
+                break;
+            }
+            // The bucket has just been swept, look up the new one.
+        }
+        return globalInterval == 0 || take(globalBucket, globalInterval, globalTolerance, now) > 0;
+    }
+
+    /**
+     * Takes a token of the bucket.
+     *
+     * @return 1 if the token was taken, 0 if the bucket is empty and -1 if it has been swept.
+     */
+    private static int take(AtomicLong bucket, long interval, long tolerance, long now) {
+        while (true) {
+            long fullAt = bucket.get();
+            if (fullAt == EVICTED) {
+                return -1;
+            }
+            // The bucket can't hold more than the burst, tokens of the past are lost.
+            long start = fullAt - now > 0 ? fullAt : now;
+            if (start - now > tolerance) {
+                return 0;
+            }
+            if (bucket.compareAndSet(fullAt, start + interval)) {
+                return 1;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that have been full for longer than the idle timeout. Safe to run while
+     * other threads take tokens.
+     */
+    public void sweep() {
+        sweep(System.nanoTime());
+    }
+
+    void sweep(long now) {
+        Iterator<Map.Entry<String, AtomicLong>> iterator = userBuckets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            AtomicLong bucket = iterator.next().getValue();
+            long fullAt = bucket.get();
+            if (fullAt != EVICTED && now - fullAt > idleNanos
+                    && bucket.compareAndSet(fullAt, EVICTED)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the time after which a full bucket is dropped, and so the period to run
+     * {@link #sweep()} at.
+     */
+    public long getIdleNanos() {
+        return idleNanos;
+    }
+
+    /**
+     * @return the number of users with a bucket.
+     */
+    int getUserCount() {
+        return userBuckets.size();
+    }
+}
@@ -0,0 +1,195 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * A {@link StoreBackend} that forwards every call to a verification service over HTTP, using the
+ * {@link StoreBackendProtocol}. {@link HttpURLConnection} keeps the connections to the service
+ * alive between calls.
+ * <p>
+ * The calls block on network I/O, so they must not be made from the main thread. Failures to
+ * reach the service are reported as a {@code false} result or {@link VerifyOutcome#ERROR}.
+ */
+public class RemoteStoreBackend implements StoreBackend {
+
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private final URL baseUrl;
+
+    /**
+     * @param baseUrl the root URL of the verification service, e.g. http://127.0.0.1:8080
+     */
+    public RemoteStoreBackend(URL baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public boolean verify(Transaction transaction, byte[] transactionSignature) {
+        return verifyWithOutcome(transaction, transactionSignature) == VerifyOutcome.ACCEPTED;
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(Transaction transaction, byte[] transactionSignature) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            StoreBackendProtocol.writeTransaction(out, transaction);
+            StoreBackendProtocol.writeBytes(out, transactionSignature);
+            return StoreBackendProtocol.readOutcome(
+                    post(StoreBackendProtocol.VERIFY_PATH, body.toByteArray()));
+        } catch (IOException e) {
+            // In a real world, better to send some error message to the user
+            return VerifyOutcome.ERROR;
+        }
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(ByteBuffer signedTransaction,
+                                           ByteBuffer transactionSignature) {
+        TransactionCodec.checkPayload(signedTransaction);
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            StoreBackendProtocol.writeSignedTransaction(out, signedTransaction);
+            StoreBackendProtocol.writeBytes(out, transactionSignature);
+            return StoreBackendProtocol.readOutcome(
+                    post(StoreBackendProtocol.VERIFY_PATH, body.toByteArray()));
+        } catch (IOException e) {
+            return VerifyOutcome.ERROR;
+        }
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(CartTransaction cart, byte[] cartSignature) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            StoreBackendProtocol.writeCart(out, cart);
+            StoreBackendProtocol.writeBytes(out, cartSignature);
+            return StoreBackendProtocol.readOutcome(
+                    post(StoreBackendProtocol.VERIFY_CART_PATH, body.toByteArray()));
+        } catch (IOException e) {
+            return VerifyOutcome.ERROR;
+        }
+    }
+
+    @Override
+    public VerifyOutcome[] verifyAll(Transaction[] transactions, byte[][] transactionSignatures) {
+        if (transactions.length != transactionSignatures.length) {
+            throw new IllegalArgumentException("Got " + transactions.length + " transactions but "
+                    + transactionSignatures.length + " signatures");
+        }
+        VerifyOutcome[] results = new VerifyOutcome[transactions.length];
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(transactions.length);
+            for (int i = 0; i < transactions.length; i++) {
+                StoreBackendProtocol.writeTransaction(out, transactions[i]);
+                StoreBackendProtocol.writeBytes(out, transactionSignatures[i]);
+            }
+            DataInputStream in = post(StoreBackendProtocol.VERIFY_ALL_PATH, body.toByteArray());
+            if (in.readInt() != results.length) {
+                throw new IOException("Unexpected number of results");
+            }
+            for (int i = 0; i < results.length; i++) {
+                results[i] = StoreBackendProtocol.readOutcome(in);
+            }
+        } catch (IOException e) {
+            // Nothing is known to be verified.
+            Arrays.fill(results, VerifyOutcome.ERROR);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean verify(Transaction transaction, String password) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            StoreBackendProtocol.writeTransaction(out, transaction);
+            StoreBackendProtocol.writeOptionalUtf(out, password);
+            return post(StoreBackendProtocol.VERIFY_PASSWORD_PATH, body.toByteArray())
+                    .readBoolean();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, PublicKey publicKey) {
+        return publicKey != null
+                ? enroll(userId, password, publicKey.getAlgorithm(), publicKey.getEncoded())
+                : enroll(userId, password, null, null);
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, String keyAlgorithm,
+                          byte[] encodedPublicKey) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeUTF(userId);
+            StoreBackendProtocol.writeOptionalUtf(out, password);
+            StoreBackendProtocol.writePublicKey(out, encodedPublicKey != null, keyAlgorithm,
+                    encodedPublicKey);
+            return post(StoreBackendProtocol.ENROLL_PATH, body.toByteArray()).readBoolean();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Posts the body to the path of the service.
+     *
+     * @return a stream over the complete response body.
+     */
+    private DataInputStream post(String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl, path).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", StoreBackendProtocol.CONTENT_TYPE);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            // Read the error body so the connection can still be reused.
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                readFully(error);
+            }
+            throw new IOException("Unexpected response " + responseCode + " for " + path);
+        }
+        return new DataInputStream(new ByteArrayInputStream(
+                readFully(connection.getInputStream())));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[512];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
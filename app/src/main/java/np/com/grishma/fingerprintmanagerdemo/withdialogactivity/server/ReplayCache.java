@@ -0,0 +1,453 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A size-capped record of the (user ID, client nonce) pairs of the transactions the backend has
+ * already received, used to reject replayed transactions.
+ * <p>
+ * The nonces of each user are kept in a {@link NonceSet}, a primitive open-addressing table, and
+ * the eviction order in two parallel arrays, so an entry doesn't need any objects of its own.
+ * <p>
+ * The cache holds at most {@link #getCapacity()} entries, where the capacity is the smaller of
+ * the configured maximum number of entries and the memory budget divided by the estimated heap
+ * cost of one entry. Entries are evicted in insertion order (FIFO): recording a new transaction
+ * once the cache is full drops the oldest recorded one.
+ * <p>
+ * Replay guarantee: a transaction is rejected as a replay as long as fewer than
+ * {@link #getCapacity()} other transactions have been recorded after it. Once it has been evicted
+ * the cache no longer remembers it, and the same transaction would be accepted again. The
+ * capacity therefore has to be sized so that the window it covers is longer than the time a
+ * captured transaction is useful to an attacker. Since only the user and the nonce are
+ * remembered, reusing a nonce of the same user for a different item is a replay as well.
+ * <p>
+ * All methods are safe to be called from multiple threads. Each user's nonces are guarded by
+ * their own lock and the eviction order by a set of striped locks, so threads recording
+ * transactions of different users rarely contend. While several threads are recording at the
+ * same time the cache can briefly hold a few more entries than its capacity.
+ * <p>
+ * The cache can be written to a snapshot file with {@link #writeSnapshot(File)} and filled from
+ * it with {@link #restoreSnapshot(File)}, so a restarted backend still rejects the transactions
+ * received before the last snapshot. The snapshot holds the entries in eviction order, after a
+ * header ({@link #SNAPSHOT_MAGIC}, {@link #SNAPSHOT_VERSION}). Every entry starts with a varint
+ * tag: 1 introduces a new user and is followed by the user ID (modified UTF-8), {@code n > 1}
+ * refers to the {@code (n - 2)}th user introduced, and 0 ends the entries. The tag is followed by
+ * the nonce in 8 bytes. The file ends with the CRC32 of everything before it.
+ */
+public class ReplayCache {
+
+    /** The default maximum number of remembered transactions. */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    /** The default memory budget of the cache in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Rough heap cost of one entry: its slot in a {@link NonceSet}, which is a quarter to half
+     * full, and its slots in the eviction ring. The per user cost of a {@link NonceSet} comes on
+     * top of it.
+     */
+    static final int ESTIMATED_BYTES_PER_ENTRY = 48;
+
+    static final int SNAPSHOT_MAGIC = 0x52504c43;
+    static final int SNAPSHOT_VERSION = 1;
+
+    private static final int RING_LOCK_STRIPES = 64;
+    private static final int SNAPSHOT_BUFFER_SIZE = 64 * 1024;
+
+    private final int capacity;
+    private final ConcurrentMap<String, NonceSet> users = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * The recorded entries in insertion order, the slot at {@code cursor % capacity} is the
+     * oldest. A slot is guarded by the ring lock at {@code slot % RING_LOCK_STRIPES}.
+     */
+    private final NonceSet[] ringOwners;
+    private final long[] ringNonces;
+    private final Object[] ringLocks = new Object[RING_LOCK_STRIPES];
+    private final AtomicLong cursor = new AtomicLong();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Object snapshotLock = new Object();
+
+    public ReplayCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of transactions to remember
+     * @param maxBytes   the memory budget of the cache in bytes
+     */
+    public ReplayCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("maxEntries and maxBytes must be positive");
+        }
+        capacity = (int) Math.max(1, Math.min(maxEntries, maxBytes / ESTIMATED_BYTES_PER_ENTRY));
+        ringOwners = new NonceSet[capacity];
+        ringNonces = new long[capacity];
+        for (int i = 0; i < RING_LOCK_STRIPES; i++) {
+            ringLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Records the transaction if it hasn't been seen yet.
+     *
+     * @param transaction the received transaction
+     * @return true if the transaction was not in the cache and has been recorded, false if it is a
+     * replay of a remembered transaction.
+     */
+    public boolean add(Transaction transaction) {
+        return add(transaction.getUserId(), transaction.getClientNonce());
+    }
+
+    /**
+     * Records the nonce of the user if it hasn't been seen yet.
+     *
+     * @return true if the nonce was not in the cache and has been recorded, false if it is a
+     * replay of a remembered nonce.
+     */
+    public boolean add(String userId, long clientNonce) {
+        lookups.incrementAndGet();
+        if (!insert(userId, clientNonce)) {
+            hits.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records the nonce of the user without counting a lookup.
+     *
+     * @return false if the nonce was remembered already.
+     */
+    private boolean insert(String userId, long clientNonce) {
+        NonceSet nonces;
+        while (true) {
+            nonces = users.get(userId);
+            if (nonces == null) {
+                NonceSet created = new NonceSet(userId);
+                nonces = users.putIfAbsent(userId, created);
+                if (nonces == null) {
+                    nonces = created;
+                }
+            }
+            synchronized (nonces) {
+                if (nonces.retired) {
+                    // Emptied and removed by an eviction in the meantime, start a new set.
+                    continue;
+                }
+                if (!nonces.add(clientNonce)) {
+                    return false;
+                }
+                break;
+            }
+        }
+        size.incrementAndGet();
+
+        int slot = (int) (cursor.getAndIncrement() % capacity);
+        NonceSet evictedOwner;
+        long evictedNonce;
+        synchronized (ringLocks[slot % RING_LOCK_STRIPES]) {
+            evictedOwner = ringOwners[slot];
+            evictedNonce = ringNonces[slot];
+            ringOwners[slot] = nonces;
+            ringNonces[slot] = clientNonce;
+        }
+        if (evictedOwner != null) {
+            evict(evictedOwner, evictedNonce);
+        }
+        return true;
+    }
+
+    private void evict(NonceSet owner, long nonce) {
+        synchronized (owner) {
+            owner.remove(nonce);
+            if (owner.isEmpty()) {
+                owner.retired = true;
+                users.remove(owner.userId, owner);
+            }
+        }
+        size.decrementAndGet();
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Writes the remembered entries to the file, oldest first. The snapshot is written to a
+     * temporary file next to it and renamed over it, so a crash leaves either the old or the new
+     * snapshot.
+     * <p>
+     * The ring lock of each entry is held only while the entry is copied, so concurrent
+     * {@link #add} calls go on while the snapshot is written. Entries recorded meanwhile may or
+     * may not be in the snapshot.
+     *
+     * @return the number of entries written.
+     */
+    public long writeSnapshot(File file) throws IOException {
+        synchronized (snapshotLock) {
+            File temporary = new File(file.getPath() + ".tmp");
+            long count = 0;
+            CRC32 crc = new CRC32();
+            try (FileOutputStream fileOut = new FileOutputStream(temporary)) {
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                        new BufferedOutputStream(fileOut, SNAPSHOT_BUFFER_SIZE), crc));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                Map<String, Integer> userIndexes = new HashMap<>();
+                long end = cursor.get();
+                for (long sequence = Math.max(0, end - capacity); sequence < end; sequence++) {
+                    int slot = (int) (sequence % capacity);
+                    NonceSet owner;
+                    long nonce;
+                    synchronized (ringLocks[slot % RING_LOCK_STRIPES]) {
+                        owner = ringOwners[slot];
+                        nonce = ringNonces[slot];
+                    }
+                    // Entries of users that were removed are skipped. The flag is read without
+                    // the lock of the set, at worst such an entry is kept, which is harmless.
+                    if (owner == null || owner.retired) {
+                        continue;
+                    }
+                    Integer userIndex = userIndexes.get(owner.userId);
+                    if (userIndex == null) {
+                        userIndexes.put(owner.userId, userIndexes.size());
+                        writeVarint(out, 1);
+                        out.writeUTF(owner.userId);
+                    } else {
+                        writeVarint(out, userIndex + 2);
+                    }
+                    out.writeLong(nonce);
+                    count++;
+                }
+                writeVarint(out, 0);
+                out.flush();
+                // The checksum covers everything before it.
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Failed to replace " + file + " with " + temporary);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Records the entries of a snapshot written by {@link #writeSnapshot(File)}, in the order they
+     * were written. If the snapshot holds more entries than the capacity, the oldest ones are
+     * evicted as usual. Restoring doesn't count as lookups in the {@link Stats}.
+     *
+     * @return the number of entries read from the snapshot.
+     * @throws IOException if the file isn't a complete snapshot, nothing is restored then
+     */
+    public long restoreSnapshot(File file) throws IOException {
+        checkSnapshotChecksum(file);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), SNAPSHOT_BUFFER_SIZE))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException(file + " is not a replay cache snapshot");
+            }
+            Map<Integer, String> userIds = new HashMap<>();
+            long count = 0;
+            int tag;
+            while ((tag = readVarint(in)) != 0) {
+                String userId;
+                if (tag == 1) {
+                    userId = in.readUTF();
+                    userIds.put(userIds.size(), userId);
+                } else {
+                    userId = userIds.get(tag - 2);
+                    if (userId == null) {
+                        throw new IOException("Invalid user reference " + tag + " in " + file);
+                    }
+                }
+                insert(userId, in.readLong());
+                count++;
+            }
+            return count;
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Checks the CRC32 at the end of the snapshot before anything is restored. Checksumming the
+     * file in large chunks up front is much faster than checksumming it while it is parsed.
+     */
+    private static void checkSnapshotChecksum(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long contentLength = in.length() - 4;
+            if (contentLength < 8) {
+                throw new IOException(file + " is truncated");
+            }
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[SNAPSHOT_BUFFER_SIZE];
+            for (long remaining = contentLength; remaining > 0; ) {
+                int count = (int) Math.min(remaining, buffer.length);
+                in.readFully(buffer, 0, count);
+                crc.update(buffer, 0, count);
+                remaining -= count;
+            }
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Checksum mismatch in " + file);
+            }
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * @return true if the transaction is currently remembered by the cache.
+     */
+    public boolean contains(Transaction transaction) {
+        NonceSet nonces = users.get(transaction.getUserId());
+        if (nonces == null) {
+            return false;
+        }
+        synchronized (nonces) {
+            return nonces.contains(transaction.getClientNonce());
+        }
+    }
+
+    /**
+     * Forgets the nonces of the user, e.g. because the user is handled by another cache from now
+     * on. Their slots in the eviction order are only freed as they come up for eviction.
+     *
+     * @return the nonces that were remembered for the user, in no particular order.
+     */
+    long[] removeUser(String userId) {
+        NonceSet nonces = users.get(userId);
+        if (nonces == null) {
+            return new long[0];
+        }
+        synchronized (nonces) {
+            nonces.retired = true;
+            users.remove(userId, nonces);
+            return nonces.toArray();
+        }
+    }
+
+    /**
+     * @return a copy of the IDs of the users with at least one remembered nonce.
+     */
+    Set<String> getUserIds() {
+        return new HashSet<>(users.keySet());
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the number of users with at least one remembered nonce.
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return a point in time snapshot of the cache statistics.
+     */
+    public Stats getStats() {
+        return new Stats(size(), capacity, lookups.get(), hits.get(), evictions.get());
+    }
+
+    /**
+     * Statistics of a {@link ReplayCache}. A hit is a lookup that found the transaction, i.e. a
+     * detected replay.
+     */
+    public static final class Stats {
+
+        private final int size;
+        private final int capacity;
+        private final long lookups;
+        private final long hits;
+        private final long evictions;
+
+        Stats(int size, int capacity, long lookups, long hits, long evictions) {
+            this.size = size;
+            this.capacity = capacity;
+            this.lookups = lookups;
+            this.hits = hits;
+            this.evictions = evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getLookups() {
+            return lookups;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the fraction of lookups that were replays, or 0 if there were no lookups.
+         */
+        public double getHitRate() {
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "ReplayCache.Stats{size=" + size + ", capacity=" + capacity + ", lookups="
+                    + lookups + ", hits=" + hits + ", evictions=" + evictions + "}";
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * Verifies signatures with a {@link Signature} engine that is created once per thread instead of
+ * once per call, so the provider lookup of {@link Signature#getInstance(String)} is paid only the
+ * first time a thread verifies.
+ * <p>
+ * Each engine remembers the key it was last initialized with. A successful or failed
+ * {@link Signature#verify(byte[])} resets the engine to the state right after
+ * {@link Signature#initVerify(PublicKey)}, so consecutive verifications with the same key skip
+ * the re-initialization entirely.
+ */
+public class SignatureVerifier {
+
+    private final String algorithm;
+    private final ThreadLocal<Engine> engines = new ThreadLocal<>();
+
+    /**
+     * @param algorithm the standard name of the signature algorithm, e.g. "SHA256withECDSA"
+     */
+    public SignatureVerifier(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Called when a key is enrolled, so that whatever the verifier keeps per key can be set up
+     * before the key is first used. Does nothing by default.
+     */
+    public void prepare(PublicKey publicKey) {
+    }
+
+    /**
+     * Verifies the signature of the data with the public key.
+     *
+     * @param publicKey the key to verify the signature with
+     * @param data      the signed data
+     * @param signature the signature of the data
+     * @return true if the signature was verified, false otherwise.
+     */
+    public boolean verify(PublicKey publicKey, byte[] data, byte[] signature)
+            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        return getEngine().verify(publicKey, data, signature);
+    }
+
+    /**
+     * Verifies the signature of the data with the public key, reading both from buffers without
+     * copying them if they are backed by arrays. The positions of the buffers are left unchanged.
+     *
+     * @param publicKey the key to verify the signature with
+     * @param data      the signed data, its remaining bytes
+     * @param signature the signature of the data, its remaining bytes
+     * @return true if the signature was verified, false otherwise.
+     */
+    public boolean verify(PublicKey publicKey, ByteBuffer data, ByteBuffer signature)
+            throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        return getEngine().verify(publicKey, data, signature);
+    }
+
+    private Engine getEngine() throws NoSuchAlgorithmException {
+        Engine engine = engines.get();
+        if (engine == null) {
+            engine = new Engine(Signature.getInstance(algorithm));
+            engines.set(engine);
+        }
+        return engine;
+    }
+
+    private static final class Engine {
+
+        private final Signature signature;
+        private PublicKey initializedKey;
+
+        Engine(Signature signature) {
+            this.signature = signature;
+        }
+
+        boolean verify(PublicKey publicKey, byte[] data, byte[] sigBytes)
+                throws InvalidKeyException, SignatureException {
+            init(publicKey);
+            try {
+                signature.update(data);
+                return signature.verify(sigBytes);
+            } catch (SignatureException e) {
+                // Don't rely on the engine state after a malformed signature.
+                initializedKey = null;
+                throw e;
+            }
+        }
+
+        boolean verify(PublicKey publicKey, ByteBuffer data, ByteBuffer sigBytes)
+                throws InvalidKeyException, SignatureException {
+            init(publicKey);
+            try {
+                // Heap buffers are passed to the engine as their backing array.
+                signature.update(data.duplicate());
+                if (sigBytes.hasArray()) {
+                    return signature.verify(sigBytes.array(),
+                            sigBytes.arrayOffset() + sigBytes.position(), sigBytes.remaining());
+                }
+                byte[] copy = new byte[sigBytes.remaining()];
+                sigBytes.duplicate().get(copy);
+                return signature.verify(copy);
+            } catch (SignatureException e) {
+                initializedKey = null;
+                throw e;
+            }
+        }
+
+        private void init(PublicKey publicKey) throws InvalidKeyException {
+            if (publicKey == null || publicKey != initializedKey) {
+                // Forget the key first, so a failing initVerify doesn't leave a stale one behind.
+                initializedKey = null;
+                signature.initVerify(publicKey);
+                initializedKey = publicKey;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
 
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
 
 /**
@@ -21,6 +22,57 @@ public interface StoreBackend {
      */
     boolean verify(Transaction transaction, byte[] transactionSignature);
 
+    /**
+     * Verifies the transaction like {@link #verify(Transaction, byte[])}, but tells why a
+     * transaction was rejected.
+     *
+     * @param transaction          the contents of the purchase transaction
+     * @param transactionSignature the signature of the transaction's contents.
+     * @return {@link VerifyOutcome#ACCEPTED} if {@link #verify(Transaction, byte[])} would return
+     * true, the reason of the rejection otherwise.
+     */
+    VerifyOutcome verifyWithOutcome(Transaction transaction, byte[] transactionSignature);
+
+    /**
+     * Verifies a transaction in its signed form, as received in a frame of the
+     * {@link TransactionCodec}, like {@link #verifyWithOutcome(Transaction, byte[])} does. The
+     * signature is checked over the received bytes, so the transaction doesn't need to be decoded
+     * and encoded again.
+     *
+     * @param signedTransaction    the signed form of the transaction, its remaining bytes
+     * @param transactionSignature the signature of the transaction, its remaining bytes
+     * @return {@link VerifyOutcome#ACCEPTED} if the transaction was verified, the reason of the
+     * rejection otherwise. The positions of the buffers are left unchanged.
+     * @throws IllegalArgumentException if {@code signedTransaction} isn't the signed form of a
+     *                                  transaction
+     */
+    VerifyOutcome verifyWithOutcome(ByteBuffer signedTransaction, ByteBuffer transactionSignature);
+
+    /**
+     * Verifies a cart of items signed once as a whole, like
+     * {@link #verifyWithOutcome(Transaction, byte[])} does for a single transaction. The client
+     * nonce of the cart is remembered along with the ones of transactions, so it can't be used
+     * again by either.
+     *
+     * @param cart          the contents of the purchase, its signed form is signed by the private
+     *                      key in the client side
+     * @param cartSignature the signature of the signed form of the cart
+     * @return {@link VerifyOutcome#ACCEPTED} if the cart was verified, the reason of the rejection
+     * otherwise.
+     */
+    VerifyOutcome verifyWithOutcome(CartTransaction cart, byte[] cartSignature);
+
+    /**
+     * Verifies a batch of transactions as {@link #verifyWithOutcome(Transaction, byte[])} does for
+     * each of them. If a client nonce of a user appears more than once in the batch, only its first
+     * occurrence can be verified and the later ones are always treated as replays.
+     *
+     * @param transactions          the transactions to verify
+     * @param transactionSignatures the signatures of the transactions, in the same order
+     * @return the outcome of the verification for each transaction, in the same order.
+     */
+    VerifyOutcome[] verifyAll(Transaction[] transactions, byte[][] transactionSignatures);
+
     /**
      * Verifies the authenticity of the provided transaction by password.
      *
@@ -41,4 +93,19 @@ public interface StoreBackend {
      * @return true if the enrollment was successful, false otherwise
      */
     boolean enroll(String userId, String password, PublicKey publicKey);
+
+    /**
+     * Enrolls a public key associated with the userId from its X.509 encoding, i.e. the wire
+     * format provided by {@link PublicKey#getEncoded()}.
+     *
+     * @param userId           the unique ID of the user within the app including server side
+     *                         implementation
+     * @param password         the password for the user for the server side
+     * @param keyAlgorithm     the standard name of the algorithm of the key, e.g. "EC"
+     * @param encodedPublicKey the X.509 encoded public key to verify the signature from the user,
+     *                         it must not be modified afterwards
+     * @return true if the enrollment was successful, false otherwise, e.g. if the key couldn't be
+     * decoded
+     */
+    boolean enroll(String userId, String password, String keyAlgorithm, byte[] encodedPublicKey);
 }
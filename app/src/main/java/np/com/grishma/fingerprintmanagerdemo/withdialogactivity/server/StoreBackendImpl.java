@@ -1,60 +1,552 @@
 package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
 import java.security.SignatureException;
+import java.security.spec.InvalidKeySpecException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A fake backend implementation of {@link StoreBackend}.
+ * <p>
+ * The backend is safe to be called from multiple request threads. The enrolled keys live in a
+ * {@link ConcurrentHashMap}, so key lookups never block, and the received transactions are
+ * remembered by a bounded {@link ReplayCache} whose replay check is a single atomic
+ * insert-if-absent instead of a check-then-add. Batches passed to {@link #verifyAll} are split
+ * across a {@link ForkJoinPool}.
+ * <p>
+ * If the backend is built with an {@link EnrollmentLog}, enrollments are written to it and the keys
+ * of users enrolled before a restart are read from it the first time they are needed. Enrollments
+ * of the same user hold the same striped lock while they log the key and make it live, so the
+ * key a user has is always the last one in the log.
+ * <p>
+ * Passwords are stored as salted {@link PasswordHasher} hashes, which are kept in memory only.
+ * Hashing a password is deliberately slow, so it runs on a small pool of its own with a bounded
+ * queue: however many password checks come in, at most as many threads as the pool has are busy
+ * hashing and the signature verifications keep the rest of the CPUs. When the queue is full,
+ * password checks and enrollments are rejected right away instead of queueing up.
+ * <p>
+ * If the backend is built with a {@link RateLimiter}, every verification takes a token of its user
+ * first and is answered with {@link VerifyOutcome#RATE_LIMITED} without using the nonce or
+ * checking anything when there is none left.
  */
 public class StoreBackendImpl implements StoreBackend {
 
-    private final Map<String, PublicKey> publicKeys = new HashMap<>();
-    private final Set<Transaction> receivedTransactions = new HashSet<>();
+    /** The number of striped locks enrollments are serialized on, picked by the user ID */
+    private static final int ENROLL_LOCK_STRIPES = 64;
+
+    private final ConcurrentMap<String, PublicKey> publicKeys = new ConcurrentHashMap<>();
+    private final ReplayCache receivedTransactions;
+    private final SignatureVerifier signatureVerifier;
+    private final ForkJoinPool batchPool;
+    private final EnrollmentLog enrollmentLog;
+    private final PublicKeyDecoder publicKeyDecoder;
+    private final ConcurrentMap<String, PasswordHasher.PasswordHash> passwordHashes =
+            new ConcurrentHashMap<>();
+    private final PasswordHasher passwordHasher;
+    private final ExecutorService passwordPool;
+    private final RateLimiter rateLimiter;
+    private final Object[] enrollLocks = new Object[ENROLL_LOCK_STRIPES];
+
+    public StoreBackendImpl() {
+        this(new ReplayCache());
+    }
+
+    /**
+     * @param replayCache the cache used to remember received transactions
+     */
+    public StoreBackendImpl(ReplayCache replayCache) {
+        this(new StoreBackendImplBuilder().setReplayCache(replayCache));
+    }
+
+    private StoreBackendImpl(StoreBackendImplBuilder builder) {
+        receivedTransactions = builder.replayCache != null
+                ? builder.replayCache : new ReplayCache();
+        signatureVerifier = builder.signatureVerifier != null
+                ? builder.signatureVerifier : new SignatureVerifier("SHA256withECDSA");
+        batchPool = builder.batchPool != null ? builder.batchPool : DefaultBatchPool.INSTANCE;
+        enrollmentLog = builder.enrollmentLog;
+        publicKeyDecoder = builder.publicKeyDecoder != null
+                ? builder.publicKeyDecoder : new PublicKeyDecoder();
+        passwordHasher = builder.passwordHasher != null
+                ? builder.passwordHasher : new PasswordHasher();
+        passwordPool = builder.passwordPool != null
+                ? builder.passwordPool : DefaultPasswordPool.INSTANCE;
+        rateLimiter = builder.rateLimiter;
+        for (int i = 0; i < ENROLL_LOCK_STRIPES; i++) {
+            enrollLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return the statistics of the cache that remembers received transactions.
+     */
+    public ReplayCache.Stats getReplayCacheStats() {
+        return receivedTransactions.getStats();
+    }
 
     @Override
     public boolean verify(Transaction transaction, byte[] transactionSignature) {
+        return verifyWithOutcome(transaction, transactionSignature) == VerifyOutcome.ACCEPTED;
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(Transaction transaction, byte[] transactionSignature) {
+        if (!tryAcquire(transaction.getUserId())) {
+            return VerifyOutcome.RATE_LIMITED;
+        }
+        // It verifies that the client nonce hasn't been used by the user before
+        // So attackers can't do replay attacks. The add is atomic, so only one of several
+        // concurrent requests carrying the same nonce can get past this point.
+        // See ReplayCache for how long a transaction is remembered.
+        if (!receivedTransactions.add(transaction)) {
+            return VerifyOutcome.REPLAYED;
+        }
         try {
-            if (receivedTransactions.contains(transaction)) {
-                // It verifies the equality of the transaction including the client nonce
-                // So attackers can't do replay attacks.
-                return false;
+            PublicKey publicKey = getPublicKey(transaction.getUserId());
+            if (publicKey == null) {
+                return VerifyOutcome.UNKNOWN_USER;
             }
-            receivedTransactions.add(transaction);
-            PublicKey publicKey = publicKeys.get(transaction.getUserId());
-            Signature verificationFunction = Signature.getInstance("SHA256withECDSA");
-            verificationFunction.initVerify(publicKey);
-            verificationFunction.update(transaction.toByteArray());
-            if (verificationFunction.verify(transactionSignature)) {
+            if (signatureVerifier.verify(publicKey, transaction.encoded(), transactionSignature)) {
                 // Transaction is verified with the public key associated with the user
                 // Do some post purchase processing in the server
-                return true;
+                return VerifyOutcome.ACCEPTED;
             }
-        } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
-            // In a real world, better to send some error message to the user
+            return VerifyOutcome.BAD_SIGNATURE;
+        } catch (SignatureException e) {
+            // The signature is malformed
+            return VerifyOutcome.BAD_SIGNATURE;
+        } catch (NoSuchAlgorithmException | InvalidKeyException | IOException e) {
+            return VerifyOutcome.ERROR;
         }
-        return false;
     }
 
     @Override
-    public boolean verify(Transaction transaction, String password) {
-        // As this is just a sample, we always assume that the password is right.
-        return true;
+    public VerifyOutcome verifyWithOutcome(ByteBuffer signedTransaction,
+                                           ByteBuffer transactionSignature) {
+        TransactionCodec.checkPayload(signedTransaction);
+        String userId = TransactionCodec.readUserId(signedTransaction);
+        if (!tryAcquire(userId)) {
+            return VerifyOutcome.RATE_LIMITED;
+        }
+        if (!receivedTransactions.add(userId,
+                TransactionCodec.readClientNonce(signedTransaction))) {
+            return VerifyOutcome.REPLAYED;
+        }
+        try {
+            PublicKey publicKey = getPublicKey(userId);
+            if (publicKey == null) {
+                return VerifyOutcome.UNKNOWN_USER;
+            }
+            return signatureVerifier.verify(publicKey, signedTransaction, transactionSignature)
+                    ? VerifyOutcome.ACCEPTED : VerifyOutcome.BAD_SIGNATURE;
+        } catch (SignatureException e) {
+            return VerifyOutcome.BAD_SIGNATURE;
+        } catch (NoSuchAlgorithmException | InvalidKeyException | IOException e) {
+            return VerifyOutcome.ERROR;
+        }
+    }
+
+    @Override
+    public VerifyOutcome verifyWithOutcome(CartTransaction cart, byte[] cartSignature) {
+        // A cart costs a single signature check, however many items it holds.
+        if (!tryAcquire(cart.getUserId())) {
+            return VerifyOutcome.RATE_LIMITED;
+        }
+        // Carts share the nonces of the user with single transactions.
+        if (!receivedTransactions.add(cart.getUserId(), cart.getClientNonce())) {
+            return VerifyOutcome.REPLAYED;
+        }
+        try {
+            PublicKey publicKey = getPublicKey(cart.getUserId());
+            if (publicKey == null) {
+                return VerifyOutcome.UNKNOWN_USER;
+            }
+            return signatureVerifier.verify(publicKey, cart.encoded(), cartSignature)
+                    ? VerifyOutcome.ACCEPTED : VerifyOutcome.BAD_SIGNATURE;
+        } catch (SignatureException e) {
+            return VerifyOutcome.BAD_SIGNATURE;
+        } catch (NoSuchAlgorithmException | InvalidKeyException | IOException e) {
+            return VerifyOutcome.ERROR;
+        }
+    }
+
+    @Override
+    public VerifyOutcome[] verifyAll(Transaction[] transactions, byte[][] transactionSignatures) {
+        if (transactions.length != transactionSignatures.length) {
+            throw new IllegalArgumentException("Got " + transactions.length + " transactions but "
+                    + transactionSignatures.length + " signatures");
+        }
+        // Find the duplicates within the batch up front, so which copy wins doesn't depend on how
+        // the batch is scheduled: the first occurrence is verified, the others are replays.
+        boolean[] duplicates = new boolean[transactions.length];
+        Map<String, NonceSet> batch = new HashMap<>();
+        for (int i = 0; i < transactions.length; i++) {
+            String userId = transactions[i].getUserId();
+            NonceSet nonces = batch.get(userId);
+            if (nonces == null) {
+                nonces = new NonceSet(userId);
+                batch.put(userId, nonces);
+            }
+            duplicates[i] = !nonces.add(transactions[i].getClientNonce());
+        }
+        VerifyOutcome[] results = new VerifyOutcome[transactions.length];
+        batchPool.invoke(new VerifyBatchTask(transactions, transactionSignatures, duplicates,
+                results, 0, transactions.length));
+        return results;
     }
 
     @Override
-    public boolean enroll(String userId, String password, PublicKey publicKey) {
-        if (publicKey != null) {
-            publicKeys.put(userId, publicKey);
+    public boolean verify(Transaction transaction, final String password) {
+        final PasswordHasher.PasswordHash passwordHash =
+                passwordHashes.get(transaction.getUserId());
+        if (passwordHash == null || password == null) {
+            return false;
+        }
+        Boolean verified = runOnPasswordPool(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws GeneralSecurityException {
+                return passwordHasher.verify(password, passwordHash);
+            }
+        });
+        return verified != null && verified;
+    }
+
+    @Override
+    public boolean enroll(String userId, final String password, PublicKey publicKey) {
+        PasswordHasher.PasswordHash passwordHash = null;
+        if (password != null) {
+            passwordHash = runOnPasswordPool(new Callable<PasswordHasher.PasswordHash>() {
+                @Override
+                public PasswordHasher.PasswordHash call() throws GeneralSecurityException {
+                    return passwordHasher.hash(password);
+                }
+            });
+            if (passwordHash == null) {
+                return false;
+            }
+        }
+        // Enrollments of a user are serialized, so the live key is always the last one logged.
+        synchronized (enrollLockOf(userId)) {
+            boolean newKey;
+            try {
+                // Re-enrolling an unchanged key leaves everything as it is, also when the key is
+                // only in the log yet.
+                newKey = publicKey != null && !publicKey.equals(getPublicKey(userId));
+                if (newKey && enrollmentLog != null) {
+                    // Nothing changes unless the key has been logged, a failed enrollment keeps
+                    // the old password as well.
+                    enrollmentLog.append(userId, publicKey);
+                    enrollmentLog.flush();
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            if (passwordHash != null) {
+                passwordHashes.put(userId, passwordHash);
+            }
+            if (newKey) {
+                publicKeys.put(userId, publicKey);
+                signatureVerifier.prepare(publicKey);
+            }
         }
-        // We just ignore the provided password here, but in real life, it is registered to the
-        // backend.
         return true;
     }
+
+    private Object enrollLockOf(String userId) {
+        return enrollLocks[(userId.hashCode() & Integer.MAX_VALUE) % ENROLL_LOCK_STRIPES];
+    }
+
+    @Override
+    public boolean enroll(String userId, String password, String keyAlgorithm,
+                          byte[] encodedPublicKey) {
+        PublicKey publicKey = null;
+        if (encodedPublicKey != null) {
+            try {
+                publicKey = publicKeyDecoder.decode(keyAlgorithm, encodedPublicKey);
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+                return false;
+            }
+        }
+        return enroll(userId, password, publicKey);
+    }
+
+    /**
+     * @return the IDs of the users this backend holds any state of: an enrolled key, a password or
+     * remembered nonces.
+     */
+    Set<String> getUserIds() {
+        Set<String> userIds = new HashSet<>(publicKeys.keySet());
+        userIds.addAll(passwordHashes.keySet());
+        userIds.addAll(receivedTransactions.getUserIds());
+        if (enrollmentLog != null) {
+            userIds.addAll(enrollmentLog.getUserIds());
+        }
+        return userIds;
+    }
+
+    /**
+     * Moves the state of the user to the target backend: the enrolled key, the password hash and
+     * the remembered nonces, which extend the replay window of the target. The key stays in the
+     * enrollment log of this backend, if it has one, but everything else is dropped.
+     * <p>
+     * The caller has to make sure no requests of the user reach either backend meanwhile.
+     */
+    void moveUserTo(String userId, StoreBackendImpl target) throws IOException {
+        PublicKey publicKey = getPublicKey(userId);
+        if (publicKey != null && !target.enroll(userId, null, publicKey)) {
+            throw new IOException("Failed to move the key of " + userId);
+        }
+        PasswordHasher.PasswordHash passwordHash = passwordHashes.get(userId);
+        if (passwordHash != null) {
+            target.passwordHashes.put(userId, passwordHash);
+        }
+        for (long nonce : receivedTransactions.removeUser(userId)) {
+            target.receivedTransactions.add(userId, nonce);
+        }
+        publicKeys.remove(userId);
+        passwordHashes.remove(userId);
+    }
+
+    /**
+     * @return true if the backend has no rate limiter or the user may verify a signature now.
+     */
+    private boolean tryAcquire(String userId) {
+        return rateLimiter == null || rateLimiter.tryAcquire(userId);
+    }
+
+    /**
+     * Runs the password hashing task on the password pool and waits for its result.
+     *
+     * @return the result of the task, or null if the pool is overloaded or the task failed.
+     */
+    private <T> T runOnPasswordPool(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = passwordPool.submit(task);
+        } catch (RejectedExecutionException e) {
+            // Overloaded, fail fast instead of adding to the backlog.
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @return the key enrolled for the user, or null if the user isn't enrolled.
+     */
+    private PublicKey getPublicKey(String userId) throws IOException {
+        PublicKey publicKey = publicKeys.get(userId);
+        if (publicKey == null && enrollmentLog != null) {
+            publicKey = enrollmentLog.get(userId);
+            if (publicKey != null) {
+                PublicKey enrolled = publicKeys.putIfAbsent(userId, publicKey);
+                if (enrolled != null) {
+                    // The user has been re-enrolled while the key was read from the log.
+                    publicKey = enrolled;
+                }
+            }
+        }
+        return publicKey;
+    }
+
+    /**
+     * Verifies a range of a batch, splitting it in halves until it is small enough.
+     */
+    private class VerifyBatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The number of transactions that are verified without splitting any further */
+        private static final int THRESHOLD = 8;
+
+        private final Transaction[] transactions;
+        private final byte[][] transactionSignatures;
+        private final boolean[] duplicates;
+        private final VerifyOutcome[] results;
+        private final int from;
+        private final int to;
+
+        VerifyBatchTask(Transaction[] transactions, byte[][] transactionSignatures,
+                        boolean[] duplicates, VerifyOutcome[] results, int from, int to) {
+            this.transactions = transactions;
+            this.transactionSignatures = transactionSignatures;
+            this.duplicates = duplicates;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = duplicates[i] ? VerifyOutcome.REPLAYED
+                            : verifyWithOutcome(transactions[i], transactionSignatures[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VerifyBatchTask(transactions, transactionSignatures, duplicates, results,
+                            from, middle),
+                    new VerifyBatchTask(transactions, transactionSignatures, duplicates, results,
+                            middle, to));
+        }
+    }
+
+    /**
+     * Lazily created pool shared by the backends that aren't given one. Its worker threads are
+     * daemon threads, so it doesn't need to be shut down.
+     */
+    private static class DefaultBatchPool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+
+    /**
+     * Lazily created pool shared by the backends that aren't given one, with a quarter of the CPUs
+     * and a queue of {@value #QUEUE_LIMIT} tasks. Its threads are daemon threads, so it doesn't
+     * need to be shut down.
+     */
+    private static class DefaultPasswordPool {
+
+        private static final int QUEUE_LIMIT = 64;
+
+        static final ExecutorService INSTANCE = newPasswordPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 4), QUEUE_LIMIT);
+    }
+
+    /**
+     * Creates a pool for hashing passwords, which rejects tasks once the queue is full.
+     *
+     * @param threads    the number of threads hashing passwords
+     * @param queueLimit the number of password checks that may wait for a thread
+     */
+    public static ExecutorService newPasswordPool(int threads, int queueLimit) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueLimit), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "password-hasher-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Builder class for {@link StoreBackendImpl}. Everything that isn't set falls back to the
+     * defaults of {@link #StoreBackendImpl()}.
+     */
+    public static class StoreBackendImplBuilder {
+        private ReplayCache replayCache;
+        private SignatureVerifier signatureVerifier;
+        private ForkJoinPool batchPool;
+        private EnrollmentLog enrollmentLog;
+        private PublicKeyDecoder publicKeyDecoder;
+        private PasswordHasher passwordHasher;
+        private ExecutorService passwordPool;
+        private RateLimiter rateLimiter;
+
+        /**
+         * @param replayCache the cache used to remember received transactions
+         */
+        public StoreBackendImplBuilder setReplayCache(ReplayCache replayCache) {
+            this.replayCache = replayCache;
+            return this;
+        }
+
+        /**
+         * @param signatureVerifier the verifier of the SHA256withECDSA signatures, e.g. a
+         *                          {@link P256SignatureVerifier}
+         */
+        public StoreBackendImplBuilder setSignatureVerifier(SignatureVerifier signatureVerifier) {
+            this.signatureVerifier = signatureVerifier;
+            return this;
+        }
+
+        /**
+         * @param batchPool the pool {@link StoreBackendImpl#verifyAll} splits batches across
+         */
+        public StoreBackendImplBuilder setBatchPool(ForkJoinPool batchPool) {
+            this.batchPool = batchPool;
+            return this;
+        }
+
+        /**
+         * @param enrollmentLog the log enrolled keys are persisted to and restored from
+         */
+        public StoreBackendImplBuilder setEnrollmentLog(EnrollmentLog enrollmentLog) {
+            this.enrollmentLog = enrollmentLog;
+            return this;
+        }
+
+        /**
+         * @param publicKeyDecoder the decoder of the keys passed to
+         *                         {@link StoreBackendImpl#enroll(String, String, String, byte[])}
+         */
+        public StoreBackendImplBuilder setPublicKeyDecoder(PublicKeyDecoder publicKeyDecoder) {
+            this.publicKeyDecoder = publicKeyDecoder;
+            return this;
+        }
+
+        /**
+         * @param passwordHasher the hasher of the passwords, which sets the cost of new hashes
+         */
+        public StoreBackendImplBuilder setPasswordHasher(PasswordHasher passwordHasher) {
+            this.passwordHasher = passwordHasher;
+            return this;
+        }
+
+        /**
+         * @param passwordPool the pool passwords are hashed on, see
+         *                     {@link StoreBackendImpl#newPasswordPool(int, int)}
+         */
+        public StoreBackendImplBuilder setPasswordPool(ExecutorService passwordPool) {
+            this.passwordPool = passwordPool;
+            return this;
+        }
+
+        /**
+         * @param rateLimiter the limiter verifications have to pass before anything is checked,
+         *                    null for no limit. The caller runs its {@link RateLimiter#sweep()}.
+         */
+        public StoreBackendImplBuilder setRateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public StoreBackendImpl build() {
+            return new StoreBackendImpl(this);
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol spoken between {@link RemoteStoreBackend} and the verification service.
+ * <p>
+ * Every {@link StoreBackend} method is a POST to its own path. Request and response bodies are
+ * written with {@link DataOutput}:
+ * <ul>
+ * <li>{@link #ENROLL_PATH}: user ID (UTF), password (optional UTF), public key, answered by a
+ * boolean</li>
+ * <li>{@link #VERIFY_PATH}: transaction, signature, answered by an outcome</li>
+ * <li>{@link #VERIFY_PASSWORD_PATH}: transaction, password (optional UTF), answered by a
+ * boolean</li>
+ * <li>{@link #VERIFY_ALL_PATH}: count (int), then transaction and signature pairs, answered by
+ * the count followed by one outcome per transaction</li>
+ * <li>{@link #VERIFY_CART_PATH}: cart, signature, answered by an outcome</li>
+ * </ul>
+ * A transaction is written as a frame of the {@link TransactionCodec}, byte arrays are written as
+ * an int length followed by the bytes, a cart as the length and the bytes of its signed form
+ * (see {@link CartTransaction}), a {@link VerifyOutcome} as its ordinal in a byte, an optional
+ * string as a presence flag followed by the string (UTF) and a public key as a presence flag, the
+ * algorithm (UTF) and its X.509 encoding. The service hands the encoded key to
+ * {@link StoreBackend#enroll(String, String, String, byte[])} and the signed form of a transaction
+ * to {@link StoreBackend#verifyWithOutcome(ByteBuffer, ByteBuffer)} as they are.
+ */
+public final class StoreBackendProtocol {
+
+    public static final String ENROLL_PATH = "/enroll";
+    public static final String VERIFY_PATH = "/verify";
+    public static final String VERIFY_PASSWORD_PATH = "/verify-password";
+    public static final String VERIFY_ALL_PATH = "/verify-all";
+    public static final String VERIFY_CART_PATH = "/verify-cart";
+    public static final String CONTENT_TYPE = "application/octet-stream";
+
+    /** Upper bound for length prefixes, so a corrupt request can't make the reader allocate GBs */
+    public static final int MAX_BYTES_LENGTH = 64 * 1024;
+
+    private StoreBackendProtocol() {
+    }
+
+    public static void writeTransaction(DataOutput out, Transaction transaction)
+            throws IOException {
+        byte[] encoded = transaction.encoded();
+        out.writeByte(TransactionCodec.VERSION);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    /**
+     * Writes the frame of a transaction from its signed form, the remaining bytes of the buffer.
+     * The position of the buffer is left unchanged.
+     */
+    public static void writeSignedTransaction(DataOutput out, ByteBuffer signedTransaction)
+            throws IOException {
+        out.writeByte(TransactionCodec.VERSION);
+        writeBytes(out, signedTransaction);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the transaction is malformed
+     */
+    public static Transaction readTransaction(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != TransactionCodec.VERSION) {
+            throw new IOException("Unsupported transaction version: " + version);
+        }
+        int length = in.readInt();
+        if (length < 0 || length > TransactionCodec.MAX_PAYLOAD_LENGTH) {
+            throw new IOException("Invalid transaction length: " + length);
+        }
+        byte[] signedTransaction = new byte[length];
+        in.readFully(signedTransaction);
+        return TransactionCodec.decodePayload(ByteBuffer.wrap(signedTransaction));
+    }
+
+    public static void writeCart(DataOutput out, CartTransaction cart) throws IOException {
+        writeBytes(out, cart.encoded());
+    }
+
+    /**
+     * Reads a cart, whose signed form may be longer than {@link #MAX_BYTES_LENGTH}.
+     *
+     * @throws IllegalArgumentException if the cart is malformed
+     */
+    public static CartTransaction readCart(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > CartTransaction.MAX_ENCODED_LENGTH) {
+            throw new IOException("Invalid cart length: " + length);
+        }
+        byte[] signedCart = new byte[length];
+        in.readFully(signedCart);
+        return CartTransaction.decode(ByteBuffer.wrap(signedCart));
+    }
+
+    /**
+     * Reads a byte array from a request held in a buffer without copying it.
+     *
+     * @return a slice of the buffer with the bytes.
+     */
+    public static ByteBuffer readBytes(ByteBuffer in) throws IOException {
+        if (in.remaining() < 4) {
+            throw new IOException("Truncated length");
+        }
+        int length = in.getInt();
+        if (length < 0 || length > MAX_BYTES_LENGTH || length > in.remaining()) {
+            throw new IOException("Invalid length: " + length);
+        }
+        ByteBuffer bytes = in.slice();
+        bytes.limit(length);
+        in.position(in.position() + length);
+        return bytes;
+    }
+
+    public static void writeOutcome(DataOutput out, VerifyOutcome outcome) throws IOException {
+        out.writeByte(outcome.ordinal());
+    }
+
+    public static VerifyOutcome readOutcome(DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        VerifyOutcome[] outcomes = VerifyOutcome.values();
+        if (ordinal >= outcomes.length) {
+            throw new IOException("Invalid outcome: " + ordinal);
+        }
+        return outcomes[ordinal];
+    }
+
+    public static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer, leaving its position unchanged.
+     */
+    public static void writeBytes(DataOutput out, ByteBuffer bytes) throws IOException {
+        out.writeInt(bytes.remaining());
+        if (bytes.hasArray()) {
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            byte[] copy = new byte[bytes.remaining()];
+            bytes.duplicate().get(copy);
+            out.write(copy);
+        }
+    }
+
+    public static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_BYTES_LENGTH) {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes a string that may be null.
+     */
+    public static void writeOptionalUtf(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * @return the string, or null if it wasn't present.
+     */
+    public static String readOptionalUtf(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes an X.509 encoded public key, the algorithm and the encoding are ignored if the key
+     * isn't present.
+     */
+    public static void writePublicKey(DataOutput out, boolean present, String algorithm,
+                                      byte[] encoded) throws IOException {
+        out.writeBoolean(present);
+        if (present) {
+            out.writeUTF(algorithm);
+            writeBytes(out, encoded);
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.util.Objects;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * An entity that represents a single transaction (purchase) of an item.
+ * <p>
+ * The signed form of a transaction is the same as writing the item ID, the user ID and the client
+ * nonce with {@link java.io.DataOutputStream#writeLong} and
+ * {@link java.io.DataOutputStream#writeUTF}: a big-endian item ID, the user ID as a two byte length
+ * followed by its modified UTF-8 bytes, and a big-endian client nonce.
  */
 public class Transaction {
 
+    /** The size of the item ID, the user ID length prefix and the client nonce in bytes */
+    private static final int FIXED_LENGTH = 8 + 2 + 8;
+
     /** The unique ID of the item of the purchase */
-    private final Long mItemId;
+    private final long mItemId;
 
     /** The unique user ID who made the transaction */
     private final String mUserId;
@@ -20,41 +26,128 @@ public class Transaction {
      * The random long value that will be also signed by the private key and verified in the server
      * that the same nonce can't be reused to prevent replay attacks.
      */
-    private final Long mClientNonce;
+    private final long mClientNonce;
+
+    /** The length of {@link #mUserId} in modified UTF-8 */
+    private final int mUserIdLength;
+
+    /** Lazily computed, like {@link String#hashCode()} a benign race only recomputes it */
+    private int mHash;
+
+    /**
+     * Lazily computed encoding for transactions that are encoded more than once. Unlike
+     * {@link #mHash} it has to be volatile: transactions are shared between threads, and without
+     * it another thread could see the array before its contents.
+     */
+    private volatile byte[] mEncoded;
 
     public Transaction(String userId, long itemId, long clientNonce) {
         mItemId = itemId;
         mUserId = userId;
         mClientNonce = clientNonce;
+        mUserIdLength = modifiedUtf8Length(userId);
+        if (mUserIdLength > 0xFFFF) {
+            throw new IllegalArgumentException("userId is too long: " + mUserIdLength + " bytes");
+        }
     }
 
     public String getUserId() {
         return mUserId;
     }
 
-    public byte[] toByteArray() {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        DataOutputStream dataOutputStream = null;
-        try {
-            dataOutputStream = new DataOutputStream(byteArrayOutputStream);
-            dataOutputStream.writeLong(mItemId);
-            dataOutputStream.writeUTF(mUserId);
-            dataOutputStream.writeLong(mClientNonce);
-            return byteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            try {
-                if (dataOutputStream != null) {
-                    dataOutputStream.close();
-                }
-            } catch (IOException ignore) {
+    public long getItemId() {
+        return mItemId;
+    }
+
+    public long getClientNonce() {
+        return mClientNonce;
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo(ByteBuffer)} writes.
+     */
+    public int encodedLength() {
+        return FIXED_LENGTH + mUserIdLength;
+    }
+
+    /**
+     * Writes the signed form of this transaction at the current position of the buffer without
+     * allocating.
+     *
+     * @param buffer the buffer to write to, it needs at least {@link #encodedLength()} bytes
+     *               remaining.
+     * @throws BufferOverflowException if there is not enough space in the buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        byte[] encoded = mEncoded;
+        if (encoded != null) {
+            buffer.put(encoded);
+            return;
+        }
+        if (buffer.remaining() < encodedLength()) {
+            throw new BufferOverflowException();
+        }
+        buffer.putLong(mItemId);
+        buffer.putShort((short) mUserIdLength);
+        writeModifiedUtf8(buffer, mUserId);
+        buffer.putLong(mClientNonce);
+    }
+
+    /**
+     * Writes the modified UTF-8 bytes of the string, without a length prefix.
+     */
+    static void writeModifiedUtf8(ByteBuffer buffer, String s) {
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                buffer.put((byte) c);
+            } else if (c <= 0x07FF) {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
             }
-            try {
-                byteArrayOutputStream.close();
-            } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * @return a new array with the signed form of this transaction.
+     */
+    public byte[] toByteArray() {
+        return encoded().clone();
+    }
+
+    /**
+     * @return the cached signed form of this transaction, which must not be modified.
+     */
+    byte[] encoded() {
+        byte[] encoded = mEncoded;
+        if (encoded == null) {
+            encoded = new byte[encodedLength()];
+            writeTo(ByteBuffer.wrap(encoded));
+            mEncoded = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * @return the number of bytes of the string in modified UTF-8.
+     */
+    static int modifiedUtf8Length(String s) {
+        int length = 0;
+        for (int i = 0, count = s.length(); i < count; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
             }
         }
+        return length;
     }
 
     @Override
@@ -67,12 +160,18 @@ public class Transaction {
         }
 
         Transaction that = (Transaction) o;
-        return Objects.equals(mItemId, that.mItemId) && Objects.equals(mUserId, that.mUserId) &&
-                Objects.equals(mClientNonce, that.mClientNonce);
+        return mItemId == that.mItemId && mClientNonce == that.mClientNonce
+                && mUserId.equals(that.mUserId);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(mItemId, mUserId, mClientNonce);
+        int hash = mHash;
+        if (hash == 0) {
+            hash = 31 * (31 * (31 + (int) (mItemId ^ (mItemId >>> 32))) + mUserId.hashCode())
+                    + (int) (mClientNonce ^ (mClientNonce >>> 32));
+            mHash = hash;
+        }
+        return hash;
     }
 }
@@ -0,0 +1,187 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The wire format of {@link Transaction}s: a frame made of the format {@link #VERSION} in a byte,
+ * the length of the payload as a big-endian int and the payload, which is the signed form of the
+ * transaction as described in {@link Transaction}.
+ * <p>
+ * Because the payload is exactly what the client signed, a receiver doesn't need to rebuild and
+ * re-encode a {@link Transaction} to check its signature: {@link #readSignedPayload(ByteBuffer)}
+ * returns a slice of the received buffer that can be handed to
+ * {@link StoreBackend#verifyWithOutcome(ByteBuffer, ByteBuffer)} as it is.
+ * <p>
+ * Malformed frames are rejected with an {@link IllegalArgumentException}. A frame that isn't
+ * complete yet is rejected with a {@link BufferUnderflowException} without consuming anything, so
+ * a reader can wait for more bytes and try again.
+ */
+public final class TransactionCodec {
+
+    /** The version of the format, written as the first byte of every frame */
+    public static final int VERSION = 1;
+
+    /** The size of the version and the payload length in bytes */
+    public static final int HEADER_LENGTH = 1 + 4;
+
+    /** The size of the item ID, the user ID length prefix and the client nonce in bytes */
+    private static final int FIXED_PAYLOAD_LENGTH = 8 + 2 + 8;
+
+    /** The largest possible payload, with a user ID of 0xFFFF bytes */
+    public static final int MAX_PAYLOAD_LENGTH = FIXED_PAYLOAD_LENGTH + 0xFFFF;
+
+    private TransactionCodec() {
+    }
+
+    /**
+     * @return the number of bytes {@link #encode(Transaction, ByteBuffer)} writes.
+     */
+    public static int encodedLength(Transaction transaction) {
+        return HEADER_LENGTH + transaction.encodedLength();
+    }
+
+    /**
+     * Writes the frame of the transaction at the current position of the buffer.
+     *
+     * @throws BufferOverflowException if there is not enough space in the buffer
+     */
+    public static void encode(Transaction transaction, ByteBuffer buffer) {
+        if (buffer.remaining() < encodedLength(transaction)) {
+            throw new BufferOverflowException();
+        }
+        buffer.put((byte) VERSION);
+        buffer.putInt(transaction.encodedLength());
+        transaction.writeTo(buffer);
+    }
+
+    /**
+     * Reads the frame at the current position of the buffer and moves the position past it.
+     *
+     * @return the decoded transaction.
+     */
+    public static Transaction decode(ByteBuffer buffer) {
+        return decodePayload(readSignedPayload(buffer));
+    }
+
+    /**
+     * Reads the frame at the current position of the buffer and moves the position past it,
+     * without copying or decoding the payload.
+     *
+     * @return a slice of the buffer holding the signed form of the transaction, positioned at its
+     * start. It shares the content of the buffer.
+     */
+    public static ByteBuffer readSignedPayload(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_LENGTH) {
+            throw new BufferUnderflowException();
+        }
+        int version = buffer.get(start) & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported transaction version: " + version);
+        }
+        int payloadLength = buffer.getInt(start + 1);
+        if (payloadLength < FIXED_PAYLOAD_LENGTH || payloadLength > MAX_PAYLOAD_LENGTH) {
+            throw new IllegalArgumentException("Invalid transaction length: " + payloadLength);
+        }
+        if (buffer.remaining() - HEADER_LENGTH < payloadLength) {
+            throw new BufferUnderflowException();
+        }
+        int payloadStart = start + HEADER_LENGTH;
+        int userIdLength = buffer.getShort(payloadStart + 8) & 0xFFFF;
+        if (payloadLength != FIXED_PAYLOAD_LENGTH + userIdLength) {
+            throw new IllegalArgumentException("Transaction length " + payloadLength
+                    + " doesn't match the user ID length " + userIdLength);
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(payloadStart);
+        payload.limit(payloadStart + payloadLength);
+        buffer.position(payloadStart + payloadLength);
+        return payload.slice();
+    }
+
+    /**
+     * Decodes the signed form of a transaction, i.e. the remaining bytes of the buffer. The
+     * position of the buffer is left unchanged.
+     */
+    public static Transaction decodePayload(ByteBuffer payload) {
+        checkPayload(payload);
+        int start = payload.position();
+        return new Transaction(readUserId(payload), payload.getLong(start),
+                readClientNonce(payload));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the remaining bytes of the buffer aren't the signed form
+     *                                  of a transaction.
+     */
+    static void checkPayload(ByteBuffer payload) {
+        if (payload.remaining() < FIXED_PAYLOAD_LENGTH || payload.remaining()
+                != FIXED_PAYLOAD_LENGTH + (payload.getShort(payload.position() + 8) & 0xFFFF)) {
+            throw new IllegalArgumentException("Invalid transaction length: "
+                    + payload.remaining());
+        }
+    }
+
+    /**
+     * @return the user ID of a payload checked by {@link #checkPayload(ByteBuffer)}.
+     */
+    static String readUserId(ByteBuffer payload) {
+        int offset = payload.position() + 8;
+        return readModifiedUtf8(payload, offset + 2, payload.getShort(offset) & 0xFFFF);
+    }
+
+    /**
+     * Decodes a string from its modified UTF-8 bytes, the encoding of
+     * {@link java.io.DataInputStream#readUTF} without the length prefix.
+     *
+     * @param offset the index of the first byte in the buffer
+     * @param length the number of bytes
+     * @throws IllegalArgumentException if the bytes aren't modified UTF-8
+     */
+    static String readModifiedUtf8(ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        char[] chars = new char[length];
+        int count = 0;
+        // The modified UTF-8 decoding of DataInputStream.readUTF.
+        while (offset < end) {
+            int b = buffer.get(offset) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                offset++;
+            } else if ((b & 0xE0) == 0xC0) {
+                if (offset + 2 > end) {
+                    throw new IllegalArgumentException("Truncated user ID");
+                }
+                int b2 = buffer.get(offset + 1);
+                if ((b2 & 0xC0) != 0x80) {
+                    throw new IllegalArgumentException("Malformed user ID");
+                }
+                chars[count++] = (char) (((b & 0x1F) << 6) | (b2 & 0x3F));
+                offset += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                if (offset + 3 > end) {
+                    throw new IllegalArgumentException("Truncated user ID");
+                }
+                int b2 = buffer.get(offset + 1);
+                int b3 = buffer.get(offset + 2);
+                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80) {
+                    throw new IllegalArgumentException("Malformed user ID");
+                }
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+                offset += 3;
+            } else {
+                throw new IllegalArgumentException("Malformed user ID");
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * @return the client nonce of a payload checked by {@link #checkPayload(ByteBuffer)}.
+     */
+    static long readClientNonce(ByteBuffer payload) {
+        return payload.getLong(payload.limit() - 8);
+    }
+}
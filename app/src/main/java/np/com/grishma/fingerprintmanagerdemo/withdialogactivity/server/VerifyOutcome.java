@@ -0,0 +1,26 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+/**
+ * The outcome of verifying a signed transaction.
+ * <p>
+ * The ordinal is sent over the wire by the {@link StoreBackendProtocol}, so new outcomes must only
+ * be added at the end.
+ */
+public enum VerifyOutcome {
+    /** The signature was verified, the purchase can be processed. */
+    ACCEPTED,
+    /** The client nonce was already used by the user. */
+    REPLAYED,
+    /** No key is enrolled for the user. */
+    UNKNOWN_USER,
+    /** The signature doesn't match the transaction and the enrolled key, or is malformed. */
+    BAD_SIGNATURE,
+    /** The verification couldn't be carried out, e.g. the backend couldn't be reached. */
+    ERROR,
+    /**
+     * The user, or all users together, sent more verifications than the {@link RateLimiter}
+     * allows. Nothing was checked and the client nonce wasn't used, the same transaction can be
+     * sent again later.
+     */
+    RATE_LIMITED
+}
@@ -0,0 +1,60 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class NonceSourceTest {
+
+    @Test
+    public void next_neverRepeatsAcrossBlocks() {
+        NonceSource source = new NonceSource();
+        Set<Long> nonces = new HashSet<>();
+        for (int i = 0; i < 10 * NonceSource.DEFAULT_BLOCK_SIZE; i++) {
+            assertTrue(nonces.add(source.next()));
+        }
+    }
+
+    @Test
+    public void next_neverRepeatsAcrossThreads() throws Exception {
+        // A small block and a refill executor that never runs, so the threads race to generate
+        // every next block themselves.
+        final NonceSource source = new NonceSource(16, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            results.add(executor.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() {
+                    long[] nonces = new long[50_000];
+                    for (int i = 0; i < nonces.length; i++) {
+                        nonces[i] = source.next();
+                    }
+                    return nonces;
+                }
+            }));
+        }
+        Set<Long> nonces = new HashSet<>();
+        for (Future<long[]> result : results) {
+            for (long nonce : result.get()) {
+                assertTrue(nonces.add(nonce));
+            }
+        }
+        executor.shutdown();
+        assertEquals(200_000, nonces.size());
+    }
+}
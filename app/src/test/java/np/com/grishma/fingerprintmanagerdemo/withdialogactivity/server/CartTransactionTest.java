@@ -0,0 +1,112 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CartTransactionTest {
+
+    private static CartTransaction randomCart(Random random, int size) {
+        long[] itemIds = new long[size];
+        int[] quantities = new int[size];
+        for (int i = 0; i < size; i++) {
+            // Distinct small IDs, with large random ones in between.
+            itemIds[i] = random.nextBoolean() ? random.nextLong() : i * 100L + random.nextInt(100);
+            quantities[i] = random.nextBoolean() ? 1 + random.nextInt(Integer.MAX_VALUE) : 1;
+        }
+        return new CartTransaction("caf\u00e9 \ud83d\udc4d", itemIds, quantities,
+                random.nextLong());
+    }
+
+    @Test
+    public void decode_roundTripsEncoding() {
+        Random random = new Random(7);
+        for (int size : new int[]{1, 2, 10, 1000, CartTransaction.MAX_ITEMS}) {
+            CartTransaction cart = randomCart(random, size);
+            byte[] encoded = cart.toByteArray();
+
+            assertEquals(encoded.length, cart.encodedLength());
+            assertEquals(cart, CartTransaction.decode(ByteBuffer.wrap(encoded)));
+        }
+    }
+
+    @Test
+    public void decode_leavesBufferPositionUnchanged() {
+        CartTransaction cart = new CartTransaction("user", new long[]{1}, new int[]{1}, 42);
+        ByteBuffer buffer = ByteBuffer.wrap(cart.toByteArray());
+
+        CartTransaction.decode(buffer);
+
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void encodedLength_takesAboutTwoBytesPerSortedItem() {
+        long[] itemIds = new long[1000];
+        int[] quantities = new int[itemIds.length];
+        for (int i = 0; i < itemIds.length; i++) {
+            itemIds[i] = 1_000_000 + 3 * i;
+            quantities[i] = 1 + i % 5;
+        }
+        CartTransaction cart = new CartTransaction("user", itemIds, quantities, 42);
+
+        // The first item ID takes 3 bytes, the later deltas and all quantities one byte each.
+        assertEquals(8 + 3 + 2 + 4 + 8 + 2 + 3 + 1 + 999 * 2, cart.encodedLength());
+    }
+
+    @Test
+    public void constructor_rejectsInvalidCarts() {
+        long[][] itemIds = {{}, {1, 2}, {1}, new long[CartTransaction.MAX_ITEMS + 1], {3, 5, 3}};
+        int[][] quantities = {{}, {1}, {0}, new int[CartTransaction.MAX_ITEMS + 1], {1, 1, 1}};
+        for (int i = 0; i < itemIds.length; i++) {
+            try {
+                new CartTransaction("user", itemIds[i], quantities[i], 42);
+                fail("Accepted cart " + i);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void decode_rejectsMalformedCarts() {
+        byte[] encoded = new CartTransaction("user", new long[]{1, 2}, new int[]{1, 1}, 42)
+                .toByteArray();
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        byte[] badMagic = encoded.clone();
+        badMagic[7] = 2;
+        // The quantity 1 of the last item as the two byte varint 0x81 0x00.
+        byte[] nonCanonical = Arrays.copyOf(encoded, encoded.length + 1);
+        nonCanonical[encoded.length - 1] = (byte) 0x81;
+        byte[] zeroQuantity = encoded.clone();
+        zeroQuantity[encoded.length - 1] = 0;
+        // The second item as a delta of 0, i.e. item 1 again.
+        byte[] duplicate = encoded.clone();
+        duplicate[encoded.length - 2] = 0;
+
+        for (byte[] malformed : new byte[][]{truncated, trailing, badMagic, nonCanonical,
+                zeroQuantity, duplicate}) {
+            try {
+                CartTransaction.decode(ByteBuffer.wrap(malformed));
+                fail("Decoded " + Arrays.toString(malformed));
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void toByteArray_isNeverTheSignedFormOfATransaction() {
+        byte[] encoded = new CartTransaction("user", new long[]{1}, new int[]{1}, 42)
+                .toByteArray();
+
+        try {
+            TransactionCodec.decodePayload(ByteBuffer.wrap(encoded));
+            fail("Decoded a cart as a transaction");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
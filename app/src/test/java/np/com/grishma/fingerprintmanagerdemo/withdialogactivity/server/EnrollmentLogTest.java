@@ -0,0 +1,226 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.KeyPair;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.Assert.*;
+
+public class EnrollmentLogTest {
+
+    private static final int RESTART_COUNT = 100_000;
+
+    private File file;
+    private PublicKey firstKey;
+    private PublicKey secondKey;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("enrollments", ".log");
+        assertTrue(file.delete());
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        firstKey = generator.generateKeyPair().getPublic();
+        secondKey = generator.generateKeyPair().getPublic();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+
+    @Test
+    public void open_restoresLatestKeyOfEveryUser() throws Exception {
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            log.append("alice", firstKey);
+            log.append("bob", firstKey);
+            log.append("alice", secondKey);
+        }
+
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            assertEquals(2, log.size());
+            assertEquals(3, log.getRecordCount());
+            assertEquals(secondKey, log.get("alice"));
+            assertEquals(firstKey, log.get("bob"));
+            assertNull(log.get("carol"));
+        }
+    }
+
+    @Test
+    public void open_dropsTornLastRecord() throws Exception {
+        long tornRecordEnd;
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            log.append("alice", firstKey);
+            log.append("bob", secondKey);
+            // File header, then records of length, checksum, user ID, "EC" and the key.
+            tornRecordEnd = 8 + (8 + 2 + 5 + 2 + 2 + firstKey.getEncoded().length)
+                    + (8 + 2 + 3 + 2 + 2 + secondKey.getEncoded().length) - 1;
+        }
+        // Corrupt the last byte of bob's record, as if the crash hit while it was written.
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(tornRecordEnd);
+            int lastByte = randomAccessFile.read();
+            randomAccessFile.seek(tornRecordEnd);
+            randomAccessFile.write(lastByte ^ 0xFF);
+        }
+
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            assertEquals(firstKey, log.get("alice"));
+            assertNull(log.get("bob"));
+            log.append("carol", secondKey);
+        }
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            assertEquals(2, log.size());
+            assertEquals(secondKey, log.get("carol"));
+        }
+    }
+
+    @Test
+    public void compact_keepsOnlyLatestRecords() throws Exception {
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                log.append("alice", i % 2 == 0 ? firstKey : secondKey);
+            }
+            log.append("bob", firstKey);
+
+            assertFalse(log.compactIfNeeded(0.95));
+            assertTrue(log.compactIfNeeded(0.5));
+            assertEquals(2, log.getRecordCount());
+            log.append("carol", firstKey);
+        }
+
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            assertEquals(3, log.getRecordCount());
+            assertEquals(secondKey, log.get("alice"));
+            assertEquals(firstKey, log.get("bob"));
+            assertEquals(firstKey, log.get("carol"));
+        }
+    }
+
+    @Test
+    public void storeBackend_failedAppendKeepsPassword() throws Exception {
+        EnrollmentLog log = EnrollmentLog.open(file);
+        StoreBackendImpl storeBackend =
+                new StoreBackendImpl.StoreBackendImplBuilder().setEnrollmentLog(log).build();
+        assertTrue(storeBackend.enroll("user", "password", firstKey));
+        log.close();
+        // Too large for the mapping, so the append has to remap the closed file and fails.
+        PublicKey largeKey = new PublicKey() {
+            @Override
+            public String getAlgorithm() {
+                return "EC";
+            }
+
+            @Override
+            public String getFormat() {
+                return "X.509";
+            }
+
+            @Override
+            public byte[] getEncoded() {
+                return new byte[2 * 1024 * 1024];
+            }
+        };
+
+        assertFalse(storeBackend.enroll("user", "changed", largeKey));
+        Transaction transaction = new Transaction("user", 1, 42);
+        assertTrue(storeBackend.verify(transaction, "password"));
+        assertFalse(storeBackend.verify(transaction, "changed"));
+    }
+
+    @Test
+    public void storeBackend_unchangedKeyOfLoggedUserIsNotAppended() throws Exception {
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            new StoreBackendImpl.StoreBackendImplBuilder().setEnrollmentLog(log).build()
+                    .enroll("user", null, firstKey);
+        }
+
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            StoreBackendImpl storeBackend =
+                    new StoreBackendImpl.StoreBackendImplBuilder().setEnrollmentLog(log).build();
+            assertTrue(storeBackend.enroll("user", null, firstKey));
+            assertEquals(1, log.getRecordCount());
+            assertTrue(storeBackend.enroll("user", null, secondKey));
+            assertEquals(2, log.getRecordCount());
+        }
+    }
+
+    @Test
+    public void storeBackend_concurrentReEnrollmentsKeepLoggedKeyLive() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        final KeyPair[] keyPairs = {generator.generateKeyPair(), generator.generateKeyPair()};
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            final StoreBackendImpl storeBackend =
+                    new StoreBackendImpl.StoreBackendImplBuilder().setEnrollmentLog(log).build();
+            Thread[] threads = new Thread[keyPairs.length];
+            for (int i = 0; i < threads.length; i++) {
+                final PublicKey publicKey = keyPairs[i].getPublic();
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < 200; j++) {
+                            storeBackend.enroll("user", null, publicKey);
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            KeyPair logged = log.get("user").equals(keyPairs[0].getPublic())
+                    ? keyPairs[0] : keyPairs[1];
+
+            Transaction transaction = new Transaction("user", 1, 42);
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(logged.getPrivate());
+            signature.update(transaction.toByteArray());
+            assertTrue(storeBackend.verify(transaction, signature.sign()));
+        }
+    }
+
+    @Test
+    public void storeBackend_verifiesUsersEnrolledBeforeRestart() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            new StoreBackendImpl.StoreBackendImplBuilder().setEnrollmentLog(log).build()
+                    .enroll("user", "password", keyPair.getPublic());
+        }
+
+        Transaction transaction = new Transaction("user", 1, 42);
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(transaction.toByteArray());
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            StoreBackendImpl storeBackend =
+                    new StoreBackendImpl.StoreBackendImplBuilder().setEnrollmentLog(log).build();
+            assertTrue(storeBackend.verify(transaction, signature.sign()));
+        }
+    }
+
+    @Test
+    public void open_restoresManyUsers() throws Exception {
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            for (int i = 0; i < RESTART_COUNT; i++) {
+                log.append("user" + i, i % 2 == 0 ? firstKey : secondKey);
+            }
+        }
+
+        try (EnrollmentLog log = EnrollmentLog.open(file)) {
+            assertEquals(RESTART_COUNT, log.size());
+            assertEquals(secondKey, log.get("user" + (RESTART_COUNT - 1)));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedStoreBackendTest {
+
+    @Test
+    public void snapshot_countsOutcomesAndLatencies() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        InstrumentedStoreBackend storeBackend =
+                new InstrumentedStoreBackend(new StoreBackendImpl());
+        storeBackend.enroll("user", "password", keyPair.getPublic());
+        Transaction transaction = new Transaction("user", 1, 42);
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(transaction.toByteArray());
+        byte[] sigBytes = signature.sign();
+
+        storeBackend.verify(transaction, sigBytes);
+        storeBackend.verify(transaction, sigBytes);
+        storeBackend.verify(new Transaction("somebody", 1, 42), sigBytes);
+        storeBackend.verifyAll(new Transaction[]{new Transaction("user", 1, 43)},
+                new byte[][]{sigBytes});
+
+        InstrumentedStoreBackend.Metrics metrics = storeBackend.snapshot();
+        assertEquals(1, metrics.getCount(VerifyOutcome.ACCEPTED));
+        assertEquals(1, metrics.getCount(VerifyOutcome.REPLAYED));
+        assertEquals(1, metrics.getCount(VerifyOutcome.UNKNOWN_USER));
+        assertEquals(1, metrics.getCount(VerifyOutcome.BAD_SIGNATURE));
+        assertEquals(0, metrics.getCount(VerifyOutcome.ERROR));
+        assertEquals(3, metrics.getVerifyLatency().getCount());
+        assertEquals(1, metrics.getVerifyAllLatency().getCount());
+        assertEquals(1, metrics.getEnrollLatency().getCount());
+    }
+
+    @Test
+    public void histogram_percentilesAreUpperBoundsWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500, snapshot.getMean(), 1e-6);
+        assertEquals(1_000_000, snapshot.getMax());
+        long median = snapshot.getValueAtPercentile(50);
+        assertTrue(String.valueOf(median), median >= 500_000 && median <= 500_000 * 1.125);
+        assertEquals(1_000_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void histogram_differenceOfSnapshotsCoversTheInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        histogram.record(1000);
+        histogram.record(3000);
+
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(earlier);
+        assertEquals(2, interval.getCount());
+        assertEquals(2000, interval.getMean(), 1e-6);
+        long max = interval.getMax();
+        assertTrue(String.valueOf(max), max >= 3000 && max <= 3000 * 1.125);
+        assertEquals(max, interval.getValueAtPercentile(100));
+        assertEquals(0, histogram.snapshot().minus(histogram.snapshot()).getMax());
+    }
+
+    @Test
+    public void histogram_bucketsCoverAllValues() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " <= upper bound", value <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(value + " > previous upper bound",
+                    bucket == 0 || value > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+    }
+}
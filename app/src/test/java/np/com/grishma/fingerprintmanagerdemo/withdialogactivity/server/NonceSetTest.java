@@ -0,0 +1,49 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class NonceSetTest {
+
+    @Test
+    public void zeroIsANonce() {
+        NonceSet nonces = new NonceSet("user");
+
+        assertTrue(nonces.add(0));
+        assertFalse(nonces.add(0));
+        assertTrue(nonces.contains(0));
+        assertTrue(nonces.remove(0));
+        assertFalse(nonces.contains(0));
+        assertTrue(nonces.isEmpty());
+    }
+
+    @Test
+    public void behavesLikeHashSet() {
+        NonceSet nonces = new NonceSet("user");
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // A small range, so adds, removes and lookups of present nonces all happen often.
+            long nonce = random.nextInt(2000) - 1000;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.add(nonce), nonces.add(nonce));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(nonce), nonces.remove(nonce));
+                    break;
+                default:
+                    assertEquals(expected.contains(nonce), nonces.contains(nonce));
+            }
+            assertEquals(expected.size(), nonces.size());
+        }
+        for (long nonce = -1000; nonce < 1000; nonce++) {
+            assertEquals(expected.contains(nonce), nonces.contains(nonce));
+        }
+    }
+}
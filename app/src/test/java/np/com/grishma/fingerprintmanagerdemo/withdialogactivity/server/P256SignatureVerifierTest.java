@@ -0,0 +1,199 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class P256SignatureVerifierTest {
+
+    private static KeyPair generateKeyPair(String curve) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec(curve));
+        return generator.generateKeyPair();
+    }
+
+    private static byte[] sign(KeyPair keyPair, byte[] data) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(data);
+        return signature.sign();
+    }
+
+    private static byte[] encodeInteger(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] encoded = new byte[2 + bytes.length];
+        encoded[0] = 0x02;
+        encoded[1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, encoded, 2, bytes.length);
+        return encoded;
+    }
+
+    private static byte[] encodeSignature(BigInteger r, BigInteger s) {
+        byte[] encodedR = encodeInteger(r);
+        byte[] encodedS = encodeInteger(s);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x30);
+        out.write(encodedR.length + encodedS.length);
+        out.write(encodedR, 0, encodedR.length);
+        out.write(encodedS, 0, encodedS.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return "true", "false" or the class of the exception thrown.
+     */
+    private static String outcome(SignatureVerifier verifier, KeyPair keyPair, byte[] data,
+                                  byte[] signature) {
+        try {
+            return String.valueOf(verifier.verify(keyPair.getPublic(), data, signature));
+        } catch (Exception e) {
+            return e.getClass().getName();
+        }
+    }
+
+    private static String bufferOutcome(SignatureVerifier verifier, KeyPair keyPair, byte[] data,
+                                        byte[] signature) {
+        try {
+            return String.valueOf(verifier.verify(keyPair.getPublic(), ByteBuffer.wrap(data),
+                    ByteBuffer.wrap(signature)));
+        } catch (Exception e) {
+            return e.getClass().getName();
+        }
+    }
+
+    /**
+     * Builds signatures that are valid, valid for other data or keys, re-encoded, corrupted or
+     * made up, and checks that the tables come to the same result as the JCA engine for every
+     * one of them.
+     */
+    @Test
+    public void verify_matchesJcaOnRandomizedCorpus() throws Exception {
+        Random random = new Random(23);
+        KeyPair[] keyPairs = new KeyPair[8];
+        P256.Table[] tables = new P256.Table[keyPairs.length];
+        P256SignatureVerifier verifier = new P256SignatureVerifier(keyPairs.length);
+        for (int i = 0; i < keyPairs.length; i++) {
+            keyPairs[i] = generateKeyPair("secp256r1");
+            tables[i] = new P256.Table(((ECPublicKey) keyPairs[i].getPublic()).getW(),
+                    P256.KEY_WINDOW_BITS);
+            verifier.prepare(keyPairs[i].getPublic());
+        }
+        SignatureVerifier jca = new SignatureVerifier("SHA256withECDSA");
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+
+        int verifiedWithTable = 0;
+        int accepted = 0;
+        for (int i = 0; i < 1600; i++) {
+            KeyPair keyPair = keyPairs[i % keyPairs.length];
+            byte[] data = new byte[random.nextInt(100)];
+            random.nextBytes(data);
+            byte[] signature = sign(keyPair, data);
+            BigInteger[] rs = P256SignatureVerifier.decodeSignature(ByteBuffer.wrap(signature));
+            BigInteger r = rs[0];
+            BigInteger s = rs[1];
+            switch (i / keyPairs.length % 10) {
+                case 0:
+                    break;
+                case 1:
+                    data = data.length > 0 ? data : new byte[1];
+                    data[random.nextInt(data.length)] ^= 1 << random.nextInt(8);
+                    break;
+                case 2:
+                    signature[random.nextInt(signature.length)] ^= 1 << random.nextInt(8);
+                    break;
+                case 3:
+                    signature = sign(keyPairs[(i + 1) % keyPairs.length], data);
+                    break;
+                case 4:
+                    // (r, n - s) is valid as well.
+                    signature = encodeSignature(r, P256.N.subtract(s));
+                    break;
+                case 5:
+                    signature = encodeSignature(s, r);
+                    break;
+                case 6:
+                    signature = encodeSignature(new BigInteger(256, random),
+                            new BigInteger(256, random));
+                    break;
+                case 7:
+                    signature = encodeSignature(r.add(BigInteger.ONE), s);
+                    break;
+                case 8:
+                    BigInteger[] edges = {BigInteger.ZERO, BigInteger.ONE,
+                            P256.N.subtract(BigInteger.ONE), P256.N, P256.P};
+                    signature = encodeSignature(edges[random.nextInt(edges.length)],
+                            edges[random.nextInt(edges.length)]);
+                    break;
+                default:
+                    // Close to the valid signature, but off by a small amount.
+                    signature = encodeSignature(r, s.add(BigInteger.valueOf(i)).mod(P256.N));
+                    break;
+            }
+
+            String expected = outcome(jca, keyPair, data, signature);
+            assertEquals("Signature " + i, expected, outcome(verifier, keyPair, data, signature));
+            assertEquals("Signature " + i, expected,
+                    bufferOutcome(verifier, keyPair, data, signature));
+            BigInteger[] decoded =
+                    P256SignatureVerifier.decodeSignature(ByteBuffer.wrap(signature));
+            if (decoded != null) {
+                assertEquals("Signature " + i, expected, String.valueOf(P256.verify(
+                        tables[i % keyPairs.length], sha256.digest(data), decoded[0], decoded[1])));
+                verifiedWithTable++;
+            }
+            if ("true".equals(expected)) {
+                accepted++;
+            }
+        }
+        assertTrue(verifiedWithTable > 1200);
+        assertTrue(accepted > 300);
+        for (KeyPair keyPair : keyPairs) {
+            assertTrue(verifier.isCached(keyPair.getPublic()));
+        }
+    }
+
+    @Test
+    public void verify_fallsBackToJcaForColdKeys() throws Exception {
+        KeyPair cold = generateKeyPair("secp256r1");
+        KeyPair hot = generateKeyPair("secp256r1");
+        P256SignatureVerifier verifier = new P256SignatureVerifier(1);
+        verifier.prepare(hot.getPublic());
+        // The cache is full, enrolling another key doesn't evict the table of the first one.
+        verifier.prepare(cold.getPublic());
+        byte[] data = {1, 2, 3};
+
+        assertTrue(verifier.isCached(hot.getPublic()));
+        assertFalse(verifier.isCached(cold.getPublic()));
+        assertTrue(verifier.verify(cold.getPublic(), data, sign(cold, data)));
+        assertFalse(verifier.verify(cold.getPublic(), data, sign(hot, data)));
+        assertFalse(verifier.isCached(cold.getPublic()));
+        // The second signature verified by the JCA engine brings the table back.
+        assertTrue(verifier.verify(cold.getPublic(), data, sign(cold, data)));
+        assertTrue(verifier.isCached(cold.getPublic()));
+        assertTrue(verifier.verify(cold.getPublic(), data, sign(cold, data)));
+        assertFalse(verifier.isCached(hot.getPublic()));
+    }
+
+    @Test
+    public void verify_leavesOtherCurvesToJca() throws Exception {
+        KeyPair keyPair = generateKeyPair("secp384r1");
+        P256SignatureVerifier verifier = new P256SignatureVerifier();
+        verifier.prepare(keyPair.getPublic());
+        byte[] data = {1, 2, 3};
+
+        assertFalse(verifier.isCached(keyPair.getPublic()));
+        assertTrue(verifier.verify(keyPair.getPublic(), data, sign(keyPair, data)));
+        assertFalse(verifier.verify(keyPair.getPublic(), new byte[]{1}, sign(keyPair, data)));
+    }
+}
@@ -0,0 +1,147 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PartitionedStoreBackendTest {
+
+    private static final int USER_COUNT = 200;
+
+    private KeyPair keyPair;
+    private PartitionedStoreBackend storeBackend;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        storeBackend = new PartitionedStoreBackend();
+        for (int i = 0; i < 4; i++) {
+            storeBackend.addPartition("partition-" + i, newPartition());
+        }
+    }
+
+    private static StoreBackendImpl newPartition() {
+        return new StoreBackendImpl.StoreBackendImplBuilder()
+                .setPasswordHasher(new PasswordHasher(1000))
+                .build();
+    }
+
+    private byte[] sign(Transaction transaction) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(transaction.toByteArray());
+        return signature.sign();
+    }
+
+    private Map<String, StoreBackendImpl> ownersOf(int userCount) {
+        Map<String, StoreBackendImpl> owners = new HashMap<>();
+        for (StoreBackendImpl partition : storeBackend.getPartitions().values()) {
+            for (String userId : partition.getUserIds()) {
+                assertNull(userId + " is in two partitions", owners.put(userId, partition));
+            }
+        }
+        assertEquals(userCount, owners.size());
+        return owners;
+    }
+
+    @Test
+    public void enroll_spreadsUsersAcrossPartitions() {
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertTrue(storeBackend.enroll("user" + i, "password", keyPair.getPublic()));
+        }
+
+        ownersOf(USER_COUNT);
+        for (StoreBackendImpl partition : storeBackend.getPartitions().values()) {
+            int users = partition.getUserIds().size();
+            assertTrue(String.valueOf(users), users > USER_COUNT / 8 && users < USER_COUNT / 2);
+        }
+    }
+
+    @Test
+    public void addPartition_movesFewUsersAndKeepsTheirState() throws Exception {
+        Transaction[] transactions = new Transaction[USER_COUNT];
+        byte[][] signatures = new byte[USER_COUNT][];
+        for (int i = 0; i < USER_COUNT; i++) {
+            storeBackend.enroll("user" + i, "password", keyPair.getPublic());
+            transactions[i] = new Transaction("user" + i, 1, i);
+            signatures[i] = sign(transactions[i]);
+            assertEquals(VerifyOutcome.ACCEPTED,
+                    storeBackend.verifyWithOutcome(transactions[i], signatures[i]));
+        }
+        Map<String, StoreBackendImpl> before = ownersOf(USER_COUNT);
+
+        storeBackend.addPartition("partition-4", newPartition());
+
+        Map<String, StoreBackendImpl> after = ownersOf(USER_COUNT);
+        StoreBackendImpl added = storeBackend.getPartitions().get("partition-4");
+        int moved = 0;
+        for (Map.Entry<String, StoreBackendImpl> owner : after.entrySet()) {
+            if (owner.getValue() != before.get(owner.getKey())) {
+                assertSame("Users only move to the new partition", added, owner.getValue());
+                moved++;
+            }
+        }
+        assertTrue(String.valueOf(moved), moved > 0 && moved < USER_COUNT / 3);
+        // The moved users are still enrolled and their transactions are still replays.
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertEquals(VerifyOutcome.REPLAYED,
+                    storeBackend.verifyWithOutcome(transactions[i], signatures[i]));
+            Transaction next = new Transaction("user" + i, 1, USER_COUNT + i);
+            assertEquals(VerifyOutcome.ACCEPTED, storeBackend.verifyWithOutcome(next, sign(next)));
+        }
+        assertTrue(storeBackend.verify(transactions[0], "password"));
+    }
+
+    @Test
+    public void removePartition_movesItsUsersToTheOthers() throws Exception {
+        for (int i = 0; i < USER_COUNT; i++) {
+            storeBackend.enroll("user" + i, "password", keyPair.getPublic());
+        }
+        Transaction transaction = new Transaction("user0", 1, 42);
+        byte[] signature = sign(transaction);
+        storeBackend.verify(transaction, signature);
+        String ownerName = null;
+        for (Map.Entry<String, StoreBackendImpl> partition
+                : storeBackend.getPartitions().entrySet()) {
+            if (partition.getValue().getUserIds().contains("user0")) {
+                ownerName = partition.getKey();
+            }
+        }
+
+        assertNotNull(storeBackend.removePartition(ownerName));
+
+        assertEquals(3, storeBackend.getPartitions().size());
+        ownersOf(USER_COUNT);
+        assertEquals(VerifyOutcome.REPLAYED, storeBackend.verifyWithOutcome(transaction, signature));
+        assertNull(storeBackend.removePartition(ownerName));
+    }
+
+    @Test
+    public void verifyAll_routesEachTransactionToItsPartition() throws Exception {
+        Transaction[] transactions = new Transaction[20];
+        byte[][] signatures = new byte[20][];
+        for (int i = 0; i < transactions.length; i++) {
+            storeBackend.enroll("user" + i, "password", keyPair.getPublic());
+            transactions[i] = new Transaction("user" + i, 1, 42);
+            signatures[i] = sign(transactions[i]);
+        }
+        signatures[3] = signatures[4];
+
+        VerifyOutcome[] results = storeBackend.verifyAll(transactions, signatures);
+
+        for (int i = 0; i < results.length; i++) {
+            assertEquals(String.valueOf(i),
+                    i == 3 ? VerifyOutcome.BAD_SIGNATURE : VerifyOutcome.ACCEPTED, results[i]);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+
+import static org.junit.Assert.*;
+
+public class PublicKeyDecoderTest {
+
+    private static PublicKey generatePublicKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair().getPublic();
+    }
+
+    @Test
+    public void decode_sharesInstanceForIdenticalEncodings() throws Exception {
+        PublicKeyDecoder decoder = new PublicKeyDecoder();
+        PublicKey publicKey = generatePublicKey();
+
+        PublicKey decoded = decoder.decode("EC", publicKey.getEncoded());
+
+        assertEquals(publicKey, decoded);
+        assertSame(decoded, decoder.decode("EC", publicKey.getEncoded()));
+        assertNotSame(decoded, decoder.decode("EC", generatePublicKey().getEncoded()));
+    }
+
+    @Test
+    public void decode_evictsLeastRecentlyUsedKeys() throws Exception {
+        PublicKeyDecoder decoder = new PublicKeyDecoder(1);
+        byte[] first = generatePublicKey().getEncoded();
+        byte[] second = generatePublicKey().getEncoded();
+
+        PublicKey decoded = decoder.decode("EC", first);
+        decoder.decode("EC", second);
+
+        assertNotSame(decoded, decoder.decode("EC", first));
+    }
+
+    @Test(expected = InvalidKeySpecException.class)
+    public void decode_rejectsInvalidEncoding() throws Exception {
+        new PublicKeyDecoder().decode("EC", new byte[]{1, 2, 3});
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void decode_rejectsMissingAlgorithm() throws Exception {
+        new PublicKeyDecoder().decode(null, generatePublicKey().getEncoded());
+    }
+
+    @Test
+    public void storeBackend_enrollsEncodedKey() throws Exception {
+        StoreBackendImpl storeBackend = new StoreBackendImpl();
+        PublicKey publicKey = generatePublicKey();
+
+        assertTrue(storeBackend.enroll("user", "password", "EC", publicKey.getEncoded()));
+        assertFalse(storeBackend.enroll("user", "password", "EC", new byte[]{1, 2, 3}));
+        assertFalse(storeBackend.enroll("user", "password", null, publicKey.getEncoded()));
+    }
+}
@@ -0,0 +1,110 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void tryAcquire_allowsBurstThenRate() {
+        RateLimiter limiter = new RateLimiter(10, 3, Double.POSITIVE_INFINITY, 1);
+        long now = System.nanoTime();
+
+        assertTrue(limiter.tryAcquire("user", now));
+        assertTrue(limiter.tryAcquire("user", now));
+        assertTrue(limiter.tryAcquire("user", now));
+        assertFalse(limiter.tryAcquire("user", now));
+        assertFalse(limiter.tryAcquire("user", now + SECOND / 20));
+        // One token every 100 ms.
+        assertTrue(limiter.tryAcquire("user", now + SECOND / 10));
+        assertFalse(limiter.tryAcquire("user", now + SECOND / 10));
+        // Tokens don't pile up beyond the burst.
+        long later = now + 100 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("user", later));
+        }
+        assertFalse(limiter.tryAcquire("user", later));
+    }
+
+    @Test
+    public void tryAcquire_limitsAllUsersTogether() {
+        RateLimiter limiter = new RateLimiter(1000, 10, 10, 2);
+        long now = System.nanoTime();
+
+        assertTrue(limiter.tryAcquire("a", now));
+        assertTrue(limiter.tryAcquire("b", now));
+        assertFalse(limiter.tryAcquire("c", now));
+        assertTrue(limiter.tryAcquire("c", now + SECOND / 10));
+    }
+
+    @Test
+    public void tryAcquire_limitedUserDoesNotUseGlobalTokens() {
+        RateLimiter limiter = new RateLimiter(1, 1, 10, 2);
+        long now = System.nanoTime();
+
+        assertTrue(limiter.tryAcquire("abuser", now));
+        for (int i = 0; i < 100; i++) {
+            assertFalse(limiter.tryAcquire("abuser", now));
+        }
+        assertTrue(limiter.tryAcquire("user", now));
+    }
+
+    @Test
+    public void sweep_evictsIdleBuckets() {
+        RateLimiter limiter = new RateLimiter(1, 1, Double.POSITIVE_INFINITY, 1, SECOND, 2);
+        long now = System.nanoTime();
+
+        assertTrue(limiter.tryAcquire("a", now));
+        assertTrue(limiter.tryAcquire("b", now));
+        assertEquals(2, limiter.getUserCount());
+        // No room for another bucket, so c is only limited globally.
+        assertTrue(limiter.tryAcquire("c", now));
+        assertTrue(limiter.tryAcquire("c", now));
+        assertEquals(2, limiter.getUserCount());
+        assertFalse(limiter.tryAcquire("a", now));
+
+        // a and b are full after a second and idle after another one, but only a sweep drops them.
+        long later = now + 3 * SECOND;
+        assertTrue(limiter.tryAcquire("c", later));
+        assertEquals(2, limiter.getUserCount());
+        limiter.sweep(later);
+        assertEquals(0, limiter.getUserCount());
+        assertTrue(limiter.tryAcquire("c", later));
+        assertEquals(1, limiter.getUserCount());
+        assertFalse(limiter.tryAcquire("c", later));
+        assertTrue(limiter.tryAcquire("a", later));
+    }
+
+    @Test
+    public void tryAcquire_concurrentCallersTakeEachTokenOnce() throws Exception {
+        final RateLimiter limiter = new RateLimiter(0.001, 1000, Double.POSITIVE_INFINITY, 1);
+        final long now = System.nanoTime();
+        final int[] acquired = new int[8];
+        Thread[] threads = new Thread[acquired.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        if (limiter.tryAcquire("user", now)) {
+                            acquired[thread]++;
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        int sum = 0;
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            sum += acquired[i];
+        }
+        assertEquals(1000, sum);
+    }
+}
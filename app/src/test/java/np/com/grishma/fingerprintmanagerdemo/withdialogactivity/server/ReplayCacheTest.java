@@ -0,0 +1,183 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplayCacheTest {
+
+    private static final int SNAPSHOT_COUNT = 100_000;
+
+    @Test
+    public void add_rejectsRememberedTransaction() {
+        ReplayCache cache = new ReplayCache(10, Long.MAX_VALUE);
+
+        assertTrue(cache.add(new Transaction("user", 1, 42)));
+        assertFalse(cache.add(new Transaction("user", 1, 42)));
+        assertTrue(cache.add(new Transaction("user", 1, 43)));
+    }
+
+    @Test
+    public void add_evictsOldestBeyondCapacity() {
+        ReplayCache cache = new ReplayCache(3, Long.MAX_VALUE);
+        for (long nonce = 0; nonce < 5; nonce++) {
+            assertTrue(cache.add(new Transaction("user", 1, nonce)));
+        }
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains(new Transaction("user", 1, 0)));
+        assertFalse(cache.contains(new Transaction("user", 1, 1)));
+        assertTrue(cache.contains(new Transaction("user", 1, 2)));
+        assertTrue(cache.contains(new Transaction("user", 1, 4)));
+    }
+
+    @Test
+    public void capacity_isLimitedByMemoryBudget() {
+        ReplayCache cache = new ReplayCache(1000,
+                10L * ReplayCache.ESTIMATED_BYTES_PER_ENTRY);
+
+        assertEquals(10, cache.getCapacity());
+    }
+
+    @Test
+    public void stats_countLookupsHitsAndEvictions() {
+        ReplayCache cache = new ReplayCache(2, Long.MAX_VALUE);
+        cache.add(new Transaction("user", 1, 1));
+        cache.add(new Transaction("user", 1, 1));
+        cache.add(new Transaction("user", 1, 2));
+        cache.add(new Transaction("user", 1, 3));
+
+        ReplayCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(4, stats.getLookups());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(0.25, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void add_rejectsNonceReusedForAnotherItem() {
+        ReplayCache cache = new ReplayCache(10, Long.MAX_VALUE);
+
+        assertTrue(cache.add(new Transaction("user", 1, 42)));
+        assertFalse(cache.add(new Transaction("user", 2, 42)));
+        assertTrue(cache.add(new Transaction("other", 1, 42)));
+    }
+
+    @Test
+    public void add_forgetsUsersWhoseNoncesAreAllEvicted() {
+        ReplayCache cache = new ReplayCache(2, Long.MAX_VALUE);
+        cache.add(new Transaction("alice", 1, 1));
+        cache.add(new Transaction("bob", 1, 1));
+        cache.add(new Transaction("bob", 1, 2));
+
+        assertEquals(1, cache.getUserCount());
+        assertTrue(cache.add(new Transaction("alice", 1, 1)));
+        assertEquals(2, cache.getUserCount());
+    }
+
+    @Test
+    public void add_concurrentEvictionsKeepSizeAtCapacity() throws Exception {
+        final ReplayCache cache = new ReplayCache(1000, Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50_000; i++) {
+                        cache.add("user" + (i % 13), thread * 1_000_000L + i);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        ReplayCache.Stats stats = cache.getStats();
+        assertEquals(1000, stats.getSize());
+        assertEquals(200_000 - 1000, stats.getEvictions());
+        int remembered = 0;
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 50_000; i++) {
+                if (cache.contains(new Transaction("user" + (i % 13), 1, t * 1_000_000L + i))) {
+                    remembered++;
+                }
+            }
+        }
+        assertEquals(1000, remembered);
+    }
+
+    @Test
+    public void restoreSnapshot_remembersEntriesInEvictionOrder() throws Exception {
+        File file = File.createTempFile("replay", ".snapshot");
+        try {
+            ReplayCache cache = new ReplayCache(4, Long.MAX_VALUE);
+            for (long nonce = 0; nonce < 6; nonce++) {
+                cache.add(new Transaction(nonce % 2 == 0 ? "alice" : "bob", 1, nonce));
+            }
+            assertEquals(4, cache.writeSnapshot(file));
+
+            ReplayCache restored = new ReplayCache(4, Long.MAX_VALUE);
+            assertEquals(4, restored.restoreSnapshot(file));
+
+            assertEquals(4, restored.size());
+            assertFalse(restored.add(new Transaction("alice", 1, 2)));
+            assertFalse(restored.add(new Transaction("bob", 1, 5)));
+            assertFalse(restored.contains(new Transaction("bob", 1, 1)));
+            // The oldest restored entry is the first to go.
+            assertTrue(restored.add(new Transaction("carol", 1, 0)));
+            assertFalse(restored.contains(new Transaction("alice", 1, 2)));
+            assertTrue(restored.contains(new Transaction("bob", 1, 3)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void restoreSnapshot_rejectsCorruptFile() throws Exception {
+        File file = File.createTempFile("replay", ".snapshot");
+        try {
+            ReplayCache cache = new ReplayCache(10, Long.MAX_VALUE);
+            cache.add(new Transaction("alice", 1, 42));
+            cache.writeSnapshot(file);
+            try (RandomAccessFile corrupt = new RandomAccessFile(file, "rw")) {
+                corrupt.seek(corrupt.length() - 6);
+                corrupt.write(0x55);
+            }
+
+            new ReplayCache().restoreSnapshot(file);
+            fail("Restored a corrupt snapshot");
+        } catch (java.io.IOException expected) {
+            // Expected
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void writeSnapshot_restoresLargeCache() throws Exception {
+        File file = File.createTempFile("replay", ".snapshot");
+        try {
+            ReplayCache cache = new ReplayCache(SNAPSHOT_COUNT, Long.MAX_VALUE);
+            for (int i = 0; i < SNAPSHOT_COUNT; i++) {
+                cache.add("user" + (i % 10_000), i * 0x9E3779B97F4A7C15L);
+            }
+
+            cache.writeSnapshot(file);
+            ReplayCache restored = new ReplayCache(SNAPSHOT_COUNT, Long.MAX_VALUE);
+            restored.restoreSnapshot(file);
+
+            assertEquals(SNAPSHOT_COUNT, restored.size());
+            assertFalse(restored.add("user7", 7 * 0x9E3779B97F4A7C15L));
+        } finally {
+            file.delete();
+        }
+    }
+}
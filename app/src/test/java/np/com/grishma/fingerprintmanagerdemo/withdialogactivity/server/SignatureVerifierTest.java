@@ -0,0 +1,54 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.Assert.*;
+
+public class SignatureVerifierTest {
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private static byte[] sign(KeyPair keyPair, byte[] data) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(data);
+        return signature.sign();
+    }
+
+    @Test
+    public void verify_reusesEngineAcrossKeys() throws Exception {
+        SignatureVerifier verifier = new SignatureVerifier("SHA256withECDSA");
+        KeyPair first = generateKeyPair();
+        KeyPair second = generateKeyPair();
+        byte[] data = {1, 2, 3};
+
+        assertTrue(verifier.verify(first.getPublic(), data, sign(first, data)));
+        assertTrue(verifier.verify(first.getPublic(), data, sign(first, data)));
+        assertFalse(verifier.verify(second.getPublic(), data, sign(first, data)));
+        assertTrue(verifier.verify(second.getPublic(), data, sign(second, data)));
+        assertFalse(verifier.verify(first.getPublic(), new byte[]{4}, sign(first, data)));
+    }
+
+    @Test
+    public void verify_recoversAfterMalformedSignature() throws Exception {
+        SignatureVerifier verifier = new SignatureVerifier("SHA256withECDSA");
+        KeyPair keyPair = generateKeyPair();
+        byte[] data = {1, 2, 3};
+        try {
+            verifier.verify(keyPair.getPublic(), data, new byte[]{0x30, 0x01});
+        } catch (SignatureException expected) {
+        }
+
+        assertTrue(verifier.verify(keyPair.getPublic(), data, sign(keyPair, data)));
+    }
+}
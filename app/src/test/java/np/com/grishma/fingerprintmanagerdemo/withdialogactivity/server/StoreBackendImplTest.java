@@ -0,0 +1,286 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class StoreBackendImplTest {
+
+    private KeyPair keyPair;
+    private StoreBackendImpl storeBackend;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        storeBackend = new StoreBackendImpl();
+        storeBackend.enroll("user", "password", keyPair.getPublic());
+    }
+
+    private byte[] sign(Transaction transaction) throws Exception {
+        return sign(transaction.toByteArray());
+    }
+
+    private byte[] sign(byte[] data) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(data);
+        return signature.sign();
+    }
+
+    @Test
+    public void verify_acceptsSignedTransactionOnce() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        byte[] signature = sign(transaction);
+
+        assertTrue(storeBackend.verify(transaction, signature));
+        assertFalse(storeBackend.verify(transaction, signature));
+    }
+
+    @Test
+    public void verify_rejectsForgedSignature() throws Exception {
+        byte[] signature = sign(new Transaction("user", 1, 42));
+
+        assertFalse(storeBackend.verify(new Transaction("user", 2, 42), signature));
+    }
+
+    @Test
+    public void verify_rejectsUnknownUser() throws Exception {
+        Transaction transaction = new Transaction("somebody", 1, 42);
+
+        assertFalse(storeBackend.verify(transaction, sign(transaction)));
+    }
+
+    @Test
+    public void verifyPassword_checksEnrolledPassword() {
+        Transaction transaction = new Transaction("user", 1, 42);
+
+        assertTrue(storeBackend.verify(transaction, "password"));
+        assertFalse(storeBackend.verify(transaction, "passw0rd"));
+        assertFalse(storeBackend.verify(new Transaction("somebody", 1, 42), "password"));
+    }
+
+    @Test
+    public void verifyPassword_rejectsRightAwayWhenOverloaded() throws Exception {
+        ExecutorService passwordPool = StoreBackendImpl.newPasswordPool(1, 1);
+        StoreBackendImpl backend = new StoreBackendImpl.StoreBackendImplBuilder()
+                .setPasswordHasher(new PasswordHasher(1000))
+                .setPasswordPool(passwordPool)
+                .build();
+        assertTrue(backend.enroll("user", "password", keyPair.getPublic()));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // Occupy the only thread and the only queue slot.
+        Future<?> running = passwordPool.submit(blocker);
+        started.await();
+        Future<?> queued = passwordPool.submit(blocker);
+        try {
+            assertFalse(backend.verify(new Transaction("user", 1, 42), "password"));
+            assertFalse(backend.enroll("other", "password", keyPair.getPublic()));
+        } finally {
+            release.countDown();
+        }
+        running.get();
+        queued.get();
+        assertTrue(backend.verify(new Transaction("user", 1, 42), "password"));
+        passwordPool.shutdown();
+    }
+
+    @Test
+    public void verifyWithOutcome_fromReceivedBytes() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        byte[] signature = sign(transaction);
+        ByteBuffer request = ByteBuffer.allocate(TransactionCodec.encodedLength(transaction));
+        TransactionCodec.encode(transaction, request);
+        request.flip();
+        ByteBuffer signedTransaction = TransactionCodec.readSignedPayload(request);
+
+        assertEquals(VerifyOutcome.ACCEPTED, storeBackend.verifyWithOutcome(signedTransaction,
+                ByteBuffer.wrap(signature)));
+        assertEquals(0, signedTransaction.position());
+        assertEquals(VerifyOutcome.REPLAYED, storeBackend.verifyWithOutcome(signedTransaction,
+                ByteBuffer.wrap(signature)));
+        // The same nonce in the object form is a replay as well.
+        assertEquals(VerifyOutcome.REPLAYED,
+                storeBackend.verifyWithOutcome(transaction, signature));
+        Transaction forged = new Transaction("user", 2, 43);
+        assertEquals(VerifyOutcome.BAD_SIGNATURE, storeBackend.verifyWithOutcome(
+                ByteBuffer.wrap(forged.toByteArray()), ByteBuffer.wrap(signature)));
+    }
+
+    @Test
+    public void verifyWithOutcome_tellsRejectionsApart() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        byte[] signature = sign(transaction);
+
+        assertEquals(VerifyOutcome.ACCEPTED,
+                storeBackend.verifyWithOutcome(transaction, signature));
+        assertEquals(VerifyOutcome.REPLAYED,
+                storeBackend.verifyWithOutcome(transaction, signature));
+        assertEquals(VerifyOutcome.BAD_SIGNATURE,
+                storeBackend.verifyWithOutcome(new Transaction("user", 1, 43), signature));
+        assertEquals(VerifyOutcome.BAD_SIGNATURE, storeBackend.verifyWithOutcome(
+                new Transaction("user", 1, 44), new byte[]{0x30, 0x01}));
+        assertEquals(VerifyOutcome.UNKNOWN_USER,
+                storeBackend.verifyWithOutcome(new Transaction("somebody", 1, 42), signature));
+    }
+
+    @Test
+    public void verifyWithOutcome_verifiesCartOnceWithOneSignature() throws Exception {
+        CartTransaction cart = new CartTransaction("user", new long[]{3, 5, 1000},
+                new int[]{1, 2, 1}, 42);
+        byte[] signature = sign(cart.toByteArray());
+
+        assertEquals(VerifyOutcome.BAD_SIGNATURE, storeBackend.verifyWithOutcome(
+                new CartTransaction("user", new long[]{3, 5, 1000}, new int[]{1, 2, 9}, 43),
+                signature));
+        assertEquals(VerifyOutcome.ACCEPTED, storeBackend.verifyWithOutcome(cart, signature));
+        assertEquals(VerifyOutcome.REPLAYED, storeBackend.verifyWithOutcome(cart, signature));
+        assertEquals(VerifyOutcome.UNKNOWN_USER, storeBackend.verifyWithOutcome(
+                new CartTransaction("somebody", new long[]{3}, new int[]{1}, 42), signature));
+    }
+
+    @Test
+    public void verifyWithOutcome_cartsAndTransactionsShareNonces() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        CartTransaction cart = new CartTransaction("user", new long[]{1}, new int[]{1}, 42);
+
+        assertEquals(VerifyOutcome.ACCEPTED,
+                storeBackend.verifyWithOutcome(transaction, sign(transaction)));
+        assertEquals(VerifyOutcome.REPLAYED,
+                storeBackend.verifyWithOutcome(cart, sign(cart.toByteArray())));
+    }
+
+    @Test
+    public void verifyWithOutcome_rejectsTransactionSignatureForCart() throws Exception {
+        byte[] signature = sign(new Transaction("user", 1, 42));
+
+        assertEquals(VerifyOutcome.BAD_SIGNATURE, storeBackend.verifyWithOutcome(
+                new CartTransaction("user", new long[]{1}, new int[]{1}, 42), signature));
+    }
+
+    @Test
+    public void verifyWithOutcome_rateLimitedBeforeUsingNonce() throws Exception {
+        // A token every 100 seconds, so the test never sees a refill.
+        storeBackend = new StoreBackendImpl.StoreBackendImplBuilder()
+                .setRateLimiter(new RateLimiter(0.01, 2, Double.POSITIVE_INFINITY, 1))
+                .build();
+        storeBackend.enroll("user", null, keyPair.getPublic());
+        storeBackend.enroll("other", null, keyPair.getPublic());
+        Transaction forged = new Transaction("user", 1, 1);
+        Transaction transaction = new Transaction("user", 1, 2);
+        byte[] signature = sign(transaction);
+
+        assertEquals(VerifyOutcome.BAD_SIGNATURE,
+                storeBackend.verifyWithOutcome(forged, signature));
+        assertEquals(VerifyOutcome.BAD_SIGNATURE, storeBackend.verifyWithOutcome(
+                new CartTransaction("user", new long[]{1}, new int[]{1}, 3), signature));
+        assertEquals(VerifyOutcome.RATE_LIMITED,
+                storeBackend.verifyWithOutcome(transaction, signature));
+        assertEquals(VerifyOutcome.RATE_LIMITED, storeBackend.verifyWithOutcome(
+                ByteBuffer.wrap(transaction.toByteArray()), ByteBuffer.wrap(signature)));
+        // Other users have tokens of their own.
+        Transaction other = new Transaction("other", 1, 2);
+        assertEquals(VerifyOutcome.ACCEPTED, storeBackend.verifyWithOutcome(other, sign(other)));
+    }
+
+    @Test
+    public void verify_concurrentReplaysAreAcceptedExactlyOnce() throws Exception {
+        final int transactionCount = 500;
+        final int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final List<Transaction> transactions = new ArrayList<>();
+        final List<byte[]> signatures = new ArrayList<>();
+        for (int i = 0; i < transactionCount; i++) {
+            Transaction transaction = new Transaction("user", i % 7, i);
+            transactions.add(transaction);
+            signatures.add(sign(transaction));
+        }
+
+        final AtomicIntegerArray accepted = new AtomicIntegerArray(transactionCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            final List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < transactionCount; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i : order) {
+                        // Each thread replays every transaction, both with a fresh copy of the
+                        // object and with the original one.
+                        Transaction copy = new Transaction("user", i % 7, i);
+                        if (storeBackend.verify(i % 2 == 0 ? copy : transactions.get(i),
+                                signatures.get(i))) {
+                            accepted.incrementAndGet(i);
+                        }
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        for (int i = 0; i < transactionCount; i++) {
+            assertEquals("transaction " + i, 1, accepted.get(i));
+        }
+    }
+
+    @Test
+    public void verifyAll_treatsLaterDuplicatesInBatchAsReplays() throws Exception {
+        int count = 100;
+        Transaction[] transactions = new Transaction[count];
+        byte[][] signatures = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            // Every third transaction repeats the one before it.
+            long nonce = i % 3 == 2 ? i - 1 : i;
+            transactions[i] = new Transaction("user", 1, nonce);
+            signatures[i] = sign(transactions[i]);
+        }
+        signatures[3] = signatures[4];
+
+        VerifyOutcome[] results = storeBackend.verifyAll(transactions, signatures);
+
+        for (int i = 0; i < count; i++) {
+            VerifyOutcome expected = i % 3 == 2 ? VerifyOutcome.REPLAYED
+                    : i == 3 ? VerifyOutcome.BAD_SIGNATURE : VerifyOutcome.ACCEPTED;
+            assertEquals("transaction " + i, expected, results[i]);
+        }
+    }
+}
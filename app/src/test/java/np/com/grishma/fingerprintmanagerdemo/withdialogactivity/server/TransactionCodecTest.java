@@ -0,0 +1,96 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TransactionCodecTest {
+
+    private static ByteBuffer encode(Transaction... transactions) {
+        int length = 0;
+        for (Transaction transaction : transactions) {
+            length += TransactionCodec.encodedLength(transaction);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (Transaction transaction : transactions) {
+            TransactionCodec.encode(transaction, buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void decode_roundTrips() {
+        String[] userIds = {"user", "", "\u0000nul", "caf\u00e9",
+                "\u0928\u0947\u092a\u093e\u0932", "\ud83d\udc4d emoji"};
+        for (String userId : userIds) {
+            Transaction transaction = new Transaction(userId, -7, Long.MIN_VALUE + 3);
+
+            Transaction decoded = TransactionCodec.decode(encode(transaction));
+
+            assertEquals(userId, decoded.getUserId());
+            assertEquals(-7, decoded.getItemId());
+            assertEquals(Long.MIN_VALUE + 3, decoded.getClientNonce());
+        }
+    }
+
+    @Test
+    public void readSignedPayload_slicesTheSignedForm() {
+        Transaction first = new Transaction("user", 1, 42);
+        Transaction second = new Transaction("other", 2, 43);
+        ByteBuffer buffer = encode(first, second);
+
+        ByteBuffer firstPayload = TransactionCodec.readSignedPayload(buffer);
+        ByteBuffer secondPayload = TransactionCodec.readSignedPayload(buffer);
+
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ByteBuffer.wrap(first.toByteArray()), firstPayload);
+        assertEquals(ByteBuffer.wrap(second.toByteArray()), secondPayload);
+        assertSame(buffer.array(), secondPayload.array());
+        assertEquals("other", TransactionCodec.readUserId(secondPayload));
+        assertEquals(43, TransactionCodec.readClientNonce(secondPayload));
+    }
+
+    @Test
+    public void readSignedPayload_incompleteFrameConsumesNothing() {
+        ByteBuffer complete = encode(new Transaction("user", 1, 42));
+        for (int length = 0; length < complete.limit(); length++) {
+            ByteBuffer partial = complete.duplicate();
+            partial.limit(length);
+            try {
+                TransactionCodec.readSignedPayload(partial);
+                fail("Decoded " + length + " bytes");
+            } catch (BufferUnderflowException expected) {
+                assertEquals(0, partial.position());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readSignedPayload_rejectsUnknownVersion() {
+        ByteBuffer buffer = encode(new Transaction("user", 1, 42));
+        buffer.put(0, (byte) (TransactionCodec.VERSION + 1));
+
+        TransactionCodec.readSignedPayload(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readSignedPayload_rejectsInconsistentLength() {
+        ByteBuffer buffer = encode(new Transaction("user", 1, 42));
+        // Claim a longer user ID than the frame holds.
+        buffer.putShort(TransactionCodec.HEADER_LENGTH + 8, (short) 5);
+
+        TransactionCodec.readSignedPayload(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsMalformedUserId() {
+        ByteBuffer buffer = encode(new Transaction("user", 1, 42));
+        buffer.put(TransactionCodec.HEADER_LENGTH + 10, (byte) 0xC3);
+
+        TransactionCodec.decode(buffer);
+    }
+}
@@ -0,0 +1,71 @@
+package np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TransactionTest {
+
+    private static byte[] writeUtfEncoding(String userId, long itemId, long clientNonce)
+            throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        dataOutputStream.writeLong(itemId);
+        dataOutputStream.writeUTF(userId);
+        dataOutputStream.writeLong(clientNonce);
+        dataOutputStream.close();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Test
+    public void toByteArray_matchesWriteUtfFormat() throws Exception {
+        String[] userIds = {"user", "", "\u0000nul", "caf\u00e9", "\u0928\u0947\u092a\u093e\u0932",
+                "\ud83d\udc4d emoji"};
+        for (String userId : userIds) {
+            Transaction transaction = new Transaction(userId, -7, Long.MIN_VALUE + 3);
+            byte[] expected = writeUtfEncoding(userId, -7, Long.MIN_VALUE + 3);
+
+            assertArrayEquals(userId, expected, transaction.toByteArray());
+            assertEquals(userId, expected.length, transaction.encodedLength());
+        }
+    }
+
+    @Test
+    public void writeTo_writesAtBufferPosition() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        ByteBuffer buffer = ByteBuffer.allocate(3 + transaction.encodedLength());
+        buffer.position(3);
+
+        transaction.writeTo(buffer);
+
+        assertFalse(buffer.hasRemaining());
+        byte[] written = Arrays.copyOfRange(buffer.array(), 3, buffer.capacity());
+        assertArrayEquals(writeUtfEncoding("user", 1, 42), written);
+    }
+
+    @Test
+    public void toByteArray_returnsIndependentCopies() {
+        Transaction transaction = new Transaction("user", 1, 42);
+        byte[] first = transaction.toByteArray();
+        first[0] = 99;
+
+        assertEquals(0, transaction.toByteArray()[0]);
+    }
+
+    @Test
+    public void equalsAndHashCode_useAllFields() {
+        Transaction transaction = new Transaction("user", 1, 42);
+
+        assertEquals(transaction, new Transaction("user", 1, 42));
+        assertEquals(transaction.hashCode(), new Transaction("user", 1, 42).hashCode());
+        assertNotEquals(transaction, new Transaction("user", 2, 42));
+        assertNotEquals(transaction, new Transaction("other", 1, 42));
+        assertNotEquals(transaction, new Transaction("user", 1, 43));
+    }
+}
@@ -0,0 +1,81 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Compares verifying a batch one transaction at a time with {@link StoreBackendImpl#verifyAll}.
+ * A fresh backend is enrolled before every invocation so the batch is never seen as a replay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchVerifyBenchmark {
+
+    @Param({"64", "1024"})
+    public int batchSize;
+
+    private KeyPair keyPair;
+    private Transaction[] transactions;
+    private byte[][] signatures;
+    private StoreBackendImpl storeBackend;
+
+    @Setup(Level.Trial)
+    public void setUpBatch() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        transactions = new Transaction[batchSize];
+        signatures = new byte[batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            transactions[i] = new Transaction("user", 1, i);
+            signer.update(transactions[i].toByteArray());
+            signatures[i] = signer.sign();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpBackend() {
+        storeBackend = new StoreBackendImpl();
+        storeBackend.enroll("user", "password", keyPair.getPublic());
+    }
+
+    @Benchmark
+    public VerifyOutcome[] sequential() {
+        VerifyOutcome[] results = new VerifyOutcome[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            results[i] = storeBackend.verifyWithOutcome(transactions[i], signatures[i]);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public VerifyOutcome[] verifyAll() {
+        return storeBackend.verifyAll(transactions, signatures);
+    }
+}
@@ -0,0 +1,45 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Runs the benchmarks with 1, N/2 and N threads, N being the number of available processors, and
+ * writes the results of each thread count as JSON to the output directory.
+ * <p>
+ * Usage: {@code BenchmarkRunner [include regex] [output directory]}
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        File outputDirectory = new File(args.length > 1 ? args[1] : "build/jmh");
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IllegalStateException("Failed to create " + outputDirectory);
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        SortedSet<Integer> threadCounts = new TreeSet<>();
+        threadCounts.add(1);
+        threadCounts.add(Math.max(1, processors / 2));
+        threadCounts.add(processors);
+
+        for (int threads : threadCounts) {
+            File resultFile = new File(outputDirectory, "results-" + threads + "-threads.json");
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultFile.getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
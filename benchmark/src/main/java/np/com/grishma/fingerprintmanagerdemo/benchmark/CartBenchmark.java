@@ -0,0 +1,87 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.CartTransaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Compares buying the items of a cart as one {@link Transaction} each with buying them as a single
+ * {@link CartTransaction}: both sign on the client and verify on a {@link StoreBackendImpl}. Divide
+ * the score by {@link #cartSize} for the cost per item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int cartSize;
+
+    private Signature signer;
+    private StoreBackendImpl storeBackend;
+    private long[] itemIds;
+    private int[] quantities;
+    private long nonce;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        storeBackend = new StoreBackendImpl();
+        storeBackend.enroll("user", null, keyPair.getPublic());
+        itemIds = new long[cartSize];
+        quantities = new int[cartSize];
+        for (int i = 0; i < cartSize; i++) {
+            itemIds[i] = 100_000 + 7 * i;
+            quantities[i] = 1 + i % 3;
+        }
+    }
+
+    @Benchmark
+    public int transactionPerItem() throws Exception {
+        int accepted = 0;
+        for (int i = 0; i < cartSize; i++) {
+            // A transaction has no quantity, so an item bought several times is still one.
+            Transaction transaction = new Transaction("user", itemIds[i], nonce++);
+            signer.update(transaction.toByteArray());
+            if (storeBackend.verifyWithOutcome(transaction, signer.sign())
+                    == VerifyOutcome.ACCEPTED) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public VerifyOutcome cart() throws Exception {
+        CartTransaction cart = new CartTransaction("user", itemIds, quantities, nonce++);
+        signer.update(cart.toByteArray());
+        return storeBackend.verifyWithOutcome(cart, signer.sign());
+    }
+}
@@ -0,0 +1,92 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.InstrumentedStoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Measures the overhead of {@link InstrumentedStoreBackend} by running the same verifications
+ * against a plain and an instrumented {@link StoreBackendImpl}.
+ * <p>
+ * Valid verifications are dominated by the signature check, replayed ones are rejected by the
+ * replay cache alone and show the overhead of the instrumentation at its worst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    private static final int POOL_SIZE = 4096;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private StoreBackend storeBackend;
+    private Transaction[] transactions;
+    private byte[][] signatures;
+    private Transaction replayedTransaction;
+    private byte[] replayedSignature;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        // A single entry replay cache, so the pooled transactions are verified in full every time.
+        StoreBackend backend = new StoreBackendImpl(new ReplayCache(1, Long.MAX_VALUE));
+        storeBackend = instrumented ? new InstrumentedStoreBackend(backend) : backend;
+        storeBackend.enroll("user", "password", keyPair.getPublic());
+
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        transactions = new Transaction[POOL_SIZE];
+        signatures = new byte[POOL_SIZE][];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            transactions[i] = new Transaction("user", 1, i);
+            signer.update(transactions[i].toByteArray());
+            signatures[i] = signer.sign();
+        }
+
+        replayedTransaction = new Transaction("user", 1, -1);
+        signer.update(replayedTransaction.toByteArray());
+        replayedSignature = signer.sign();
+        storeBackend.verify(replayedTransaction, replayedSignature);
+    }
+
+    @Benchmark
+    public VerifyOutcome verifyValid() {
+        int i = (next.getAndIncrement() & Integer.MAX_VALUE) % POOL_SIZE;
+        return storeBackend.verifyWithOutcome(transactions[i], signatures[i]);
+    }
+
+    @Benchmark
+    public VerifyOutcome verifyReplayed() {
+        return storeBackend.verifyWithOutcome(replayedTransaction, replayedSignature);
+    }
+}
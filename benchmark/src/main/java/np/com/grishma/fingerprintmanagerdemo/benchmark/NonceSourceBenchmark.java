@@ -0,0 +1,54 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.NonceSource;
+
+/**
+ * Compares the ways of getting a client nonce: a new {@link SecureRandom} per nonce as the dialog
+ * used to, a shared {@link SecureRandom} and the {@link NonceSource}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NonceSourceBenchmark {
+
+    private SecureRandom sharedRandom;
+    private NonceSource nonceSource;
+
+    @Setup
+    public void setUp() {
+        sharedRandom = new SecureRandom();
+        nonceSource = new NonceSource();
+    }
+
+    @Benchmark
+    public long newSecureRandom() {
+        return new SecureRandom().nextLong();
+    }
+
+    @Benchmark
+    public long sharedSecureRandom() {
+        return sharedRandom.nextLong();
+    }
+
+    @Benchmark
+    public long nonceSource() {
+        return nonceSource.next();
+    }
+}
@@ -0,0 +1,73 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.P256SignatureVerifier;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.SignatureVerifier;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+
+/**
+ * Compares verifying with the JCA engine of {@link SignatureVerifier} with the precomputed tables
+ * of {@link P256SignatureVerifier}, and measures what building the table of a key costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class P256VerifierBenchmark {
+
+    private KeyPair keyPair;
+    private byte[] data;
+    private byte[] signature;
+    private SignatureVerifier jcaVerifier;
+    private P256SignatureVerifier tableVerifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        data = new Transaction("user", 1, 42).toByteArray();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(data);
+        signature = signer.sign();
+        jcaVerifier = new SignatureVerifier("SHA256withECDSA");
+        tableVerifier = new P256SignatureVerifier();
+        tableVerifier.prepare(keyPair.getPublic());
+    }
+
+    @Benchmark
+    public boolean jca() throws Exception {
+        return jcaVerifier.verify(keyPair.getPublic(), data, signature);
+    }
+
+    @Benchmark
+    public boolean table() throws Exception {
+        return tableVerifier.verify(keyPair.getPublic(), data, signature);
+    }
+
+    @Benchmark
+    public P256SignatureVerifier prepare() {
+        P256SignatureVerifier verifier = new P256SignatureVerifier(1);
+        verifier.prepare(keyPair.getPublic());
+        return verifier;
+    }
+}
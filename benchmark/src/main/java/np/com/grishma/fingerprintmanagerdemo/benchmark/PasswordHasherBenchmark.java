@@ -0,0 +1,49 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.PasswordHasher;
+
+/**
+ * Measures the cost of hashing a password at enrollment and of checking one, with the default
+ * number of iterations. Both run on the password pool of the backend, so this is the time a
+ * thread of that pool is busy per password.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+    private PasswordHasher passwordHasher;
+    private PasswordHasher.PasswordHash passwordHash;
+
+    @Setup
+    public void setUp() throws Exception {
+        passwordHasher = new PasswordHasher();
+        passwordHash = passwordHasher.hash("password");
+    }
+
+    @Benchmark
+    public PasswordHasher.PasswordHash hash() throws Exception {
+        return passwordHasher.hash("password");
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        return passwordHasher.verify("password", passwordHash);
+    }
+}
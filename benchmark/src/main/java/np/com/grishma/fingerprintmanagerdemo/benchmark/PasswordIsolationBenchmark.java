@@ -0,0 +1,116 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+
+/**
+ * Measures the latency of signature verifications while password checks saturate the backend.
+ * <p>
+ * The {@code signatureOnly} group verifies signatures alone, the {@code withPasswordLoad} group
+ * verifies signatures on one thread while {@value #PASSWORD_THREADS} threads check passwords as
+ * fast as they can. With {@code bounded} passwords are hashed on a pool of one thread with a short
+ * queue, so most password checks are rejected and the signature latency should stay close to the
+ * one of {@code signatureOnly}. Without it, every password check gets a thread of its own, as if
+ * passwords were hashed on the request threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordIsolationBenchmark {
+
+    private static final int POOL_SIZE = 4096;
+    private static final int PASSWORD_THREADS = 4;
+
+    @Param({"true", "false"})
+    public boolean bounded;
+
+    private ExecutorService passwordPool;
+    private StoreBackendImpl storeBackend;
+    private Transaction[] transactions;
+    private byte[][] signatures;
+    private final Transaction passwordTransaction = new Transaction("user", 1, 0);
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        passwordPool = bounded ? StoreBackendImpl.newPasswordPool(1, 4)
+                : Executors.newCachedThreadPool();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        // A single entry replay cache, so the pooled transactions are verified in full every time.
+        storeBackend = new StoreBackendImpl.StoreBackendImplBuilder()
+                .setReplayCache(new ReplayCache(1, Long.MAX_VALUE))
+                .setPasswordPool(passwordPool)
+                .build();
+        storeBackend.enroll("user", "password", keyPair.getPublic());
+
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        transactions = new Transaction[POOL_SIZE];
+        signatures = new byte[POOL_SIZE][];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            transactions[i] = new Transaction("user", 1, i + 1);
+            signer.update(transactions[i].toByteArray());
+            signatures[i] = signer.sign();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordPool.shutdownNow();
+    }
+
+    private boolean verifySignature() {
+        int i = (next.getAndIncrement() & Integer.MAX_VALUE) % POOL_SIZE;
+        return storeBackend.verify(transactions[i], signatures[i]);
+    }
+
+    @Benchmark
+    @Group("signatureOnly")
+    public boolean signatureOnly() {
+        return verifySignature();
+    }
+
+    @Benchmark
+    @Group("withPasswordLoad")
+    @GroupThreads(1)
+    public boolean signature() {
+        return verifySignature();
+    }
+
+    @Benchmark
+    @Group("withPasswordLoad")
+    @GroupThreads(PASSWORD_THREADS)
+    public boolean password() {
+        return storeBackend.verify(passwordTransaction, "password");
+    }
+}
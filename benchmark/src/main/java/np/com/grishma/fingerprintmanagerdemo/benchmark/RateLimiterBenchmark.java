@@ -0,0 +1,102 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.RateLimiter;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Runs legitimate traffic and a flood of forged signatures against a {@link StoreBackendImpl} with
+ * and without a {@link RateLimiter}.
+ * <p>
+ * The legitimate transactions are spread over {@value #USERS} users that stay well below their
+ * limit, so the difference is the cost of the buckets. The flood sends forged signatures of a
+ * single user as fast as it can: without a limiter every one of them costs a signature check,
+ * with it at most {@value #USER_RATE} per second do and the rest are answered by the bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int USERS = 4096;
+    private static final int USER_RATE = 10;
+
+    @Param({"false", "true"})
+    public boolean limited;
+
+    private StoreBackendImpl storeBackend;
+    private Transaction[] transactions;
+    private byte[][] signatures;
+    private byte[] forgedSignature;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger nextForged = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        // A single entry replay cache, so the pooled transactions are verified in full every time.
+        StoreBackendImpl.StoreBackendImplBuilder builder =
+                new StoreBackendImpl.StoreBackendImplBuilder()
+                        .setReplayCache(new ReplayCache(1, Long.MAX_VALUE));
+        if (limited) {
+            builder.setRateLimiter(new RateLimiter(USER_RATE, 2 * USER_RATE,
+                    Double.POSITIVE_INFINITY, 1));
+        }
+        storeBackend = builder.build();
+
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        transactions = new Transaction[USERS];
+        signatures = new byte[USERS][];
+        for (int i = 0; i < USERS; i++) {
+            // The users share a key, which makes no difference to the backend.
+            storeBackend.enroll("user" + i, null, keyPair.getPublic());
+            transactions[i] = new Transaction("user" + i, 1, i);
+            signer.update(transactions[i].toByteArray());
+            signatures[i] = signer.sign();
+        }
+
+        storeBackend.enroll("abuser", null, keyPair.getPublic());
+        signer.update(new Transaction("abuser", 2, 0).toByteArray());
+        forgedSignature = signer.sign();
+    }
+
+    @Benchmark
+    public VerifyOutcome verifyValid() {
+        int i = (next.getAndIncrement() & Integer.MAX_VALUE) % USERS;
+        return storeBackend.verifyWithOutcome(transactions[i], signatures[i]);
+    }
+
+    @Benchmark
+    public VerifyOutcome verifyForgedFlood() {
+        // A fresh nonce every time, so the replay cache doesn't reject the flood on its own.
+        return storeBackend.verifyWithOutcome(new Transaction("abuser", 1,
+                nextForged.incrementAndGet()), forgedSignature);
+    }
+}
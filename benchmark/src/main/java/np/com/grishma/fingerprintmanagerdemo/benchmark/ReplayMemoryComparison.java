@@ -0,0 +1,55 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+
+/**
+ * Compares the heap used per remembered transaction by a plain {@code HashSet<Transaction>}, as
+ * the backend used to keep, with {@link ReplayCache}.
+ * <p>
+ * Usage: {@code ReplayMemoryComparison [entries] [users]}
+ */
+public class ReplayMemoryComparison {
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        String[] userIds = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            userIds[i] = "user" + i;
+        }
+
+        long baseline = usedHeap();
+        Set<Transaction> transactions = new HashSet<>();
+        for (int i = 0; i < entries; i++) {
+            transactions.add(new Transaction(userIds[i % userCount], 1, i * 0x9E3779B97F4A7C15L));
+        }
+        long hashSetBytes = usedHeap() - baseline;
+        report("HashSet<Transaction>", hashSetBytes, transactions.size());
+        transactions = null;
+
+        baseline = usedHeap();
+        ReplayCache cache = new ReplayCache(entries, Long.MAX_VALUE);
+        for (int i = 0; i < entries; i++) {
+            cache.add(userIds[i % userCount], i * 0x9E3779B97F4A7C15L);
+        }
+        long cacheBytes = usedHeap() - baseline;
+        report("ReplayCache", cacheBytes, cache.size());
+    }
+
+    private static void report(String name, long bytes, int entries) {
+        System.out.printf("%-22s %,12d entries %,14d bytes %8.1f bytes/entry%n",
+                name, entries, bytes, (double) bytes / entries);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
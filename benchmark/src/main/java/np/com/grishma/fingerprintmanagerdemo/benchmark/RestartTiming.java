@@ -0,0 +1,86 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.EnrollmentLog;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+
+/**
+ * Measures what a restart of the backend costs: opening an {@link EnrollmentLog} with many
+ * enrollments, and writing and restoring a {@link ReplayCache} snapshot with many entries.
+ * <p>
+ * Usage: {@code RestartTiming [enrollments] [replay entries]}
+ */
+public class RestartTiming {
+
+    public static void main(String[] args) throws Exception {
+        int enrollments = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int replayEntries = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        timeEnrollmentLog(enrollments);
+        timeReplaySnapshot(replayEntries);
+    }
+
+    private static void timeEnrollmentLog(int enrollments) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        PublicKey[] keys = {generator.generateKeyPair().getPublic(),
+                generator.generateKeyPair().getPublic()};
+        File file = createTempFile("enrollments", ".log");
+        try {
+            try (EnrollmentLog log = EnrollmentLog.open(file)) {
+                for (int i = 0; i < enrollments; i++) {
+                    log.append("user" + i, keys[i % 2]);
+                }
+            }
+
+            long start = System.nanoTime();
+            try (EnrollmentLog log = EnrollmentLog.open(file)) {
+                System.out.printf("EnrollmentLog: restart with %,d enrollments (%,d MB) took "
+                        + "%,d ms%n", log.size(), file.length() >> 20, millisSince(start));
+            }
+        } finally {
+            file.delete();
+            new File(file.getPath() + ".compact").delete();
+        }
+    }
+
+    private static void timeReplaySnapshot(int entries) throws IOException {
+        File file = createTempFile("replay", ".snapshot");
+        try {
+            ReplayCache cache = new ReplayCache(entries, Long.MAX_VALUE);
+            for (int i = 0; i < entries; i++) {
+                cache.add("user" + (i % 10_000), i * 0x9E3779B97F4A7C15L);
+            }
+
+            long start = System.nanoTime();
+            cache.writeSnapshot(file);
+            long writeMillis = millisSince(start);
+            ReplayCache restored = new ReplayCache(entries, Long.MAX_VALUE);
+            start = System.nanoTime();
+            restored.restoreSnapshot(file);
+            System.out.printf("ReplayCache: snapshot of %,d entries (%,d MB) written in %,d ms, "
+                    + "restored in %,d ms%n", restored.size(), file.length() >> 20, writeMillis,
+                    millisSince(start));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static File createTempFile(String prefix, String suffix) throws IOException {
+        File file = File.createTempFile(prefix, suffix);
+        // The log and the cache create the file themselves.
+        if (!file.delete()) {
+            throw new IOException("Failed to delete " + file);
+        }
+        return file;
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,65 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.SignatureVerifier;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+
+/**
+ * Compares creating a {@link Signature} for every verification, as the backend used to do, with
+ * the per-thread engines of {@link SignatureVerifier}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureVerifierBenchmark {
+
+    private KeyPair keyPair;
+    private byte[] data;
+    private byte[] signature;
+    private SignatureVerifier signatureVerifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        data = new Transaction("user", 1, 42).toByteArray();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(data);
+        signature = signer.sign();
+        signatureVerifier = new SignatureVerifier("SHA256withECDSA");
+    }
+
+    @Benchmark
+    public boolean perCallInstance() throws Exception {
+        Signature verificationFunction = Signature.getInstance("SHA256withECDSA");
+        verificationFunction.initVerify(keyPair.getPublic());
+        verificationFunction.update(data);
+        return verificationFunction.verify(signature);
+    }
+
+    @Benchmark
+    public boolean perThreadVerifier() throws Exception {
+        return signatureVerifier.verify(keyPair.getPublic(), data, signature);
+    }
+}
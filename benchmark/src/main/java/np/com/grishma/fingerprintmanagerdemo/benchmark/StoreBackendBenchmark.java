@@ -0,0 +1,128 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Benchmarks {@link StoreBackendImpl#enroll} and {@link StoreBackendImpl#verify} for valid,
+ * invalid and replayed signatures. {@code verifyValidSigned} verifies the same transactions from
+ * their signed form in buffers, as received by the verification service.
+ * <p>
+ * The valid and invalid benchmarks cycle through a pool of pre-signed transactions. The backend's
+ * replay cache only holds a single transaction, so a transaction has long been evicted by the time
+ * it comes round again and it is verified in full every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBackendBenchmark {
+
+    private static final int POOL_SIZE = 4096;
+    private static final int USER_COUNT = 1024;
+
+    private KeyPair keyPair;
+    private StoreBackendImpl storeBackend;
+    private Transaction[] transactions;
+    private byte[][] signatures;
+    private ByteBuffer[] signedTransactions;
+    private ByteBuffer[] signatureBuffers;
+    private byte[][] forgedSignatures;
+    private String[] userIds;
+    private Transaction replayedTransaction;
+    private byte[] replayedSignature;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        storeBackend = new StoreBackendImpl(new ReplayCache(1, Long.MAX_VALUE));
+        storeBackend.enroll("user", null, keyPair.getPublic());
+
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        transactions = new Transaction[POOL_SIZE];
+        signatures = new byte[POOL_SIZE][];
+        forgedSignatures = new byte[POOL_SIZE][];
+        signedTransactions = new ByteBuffer[POOL_SIZE];
+        signatureBuffers = new ByteBuffer[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            transactions[i] = new Transaction("user", 1, i);
+            signer.update(transactions[i].toByteArray());
+            signatures[i] = signer.sign();
+            signedTransactions[i] = ByteBuffer.wrap(transactions[i].toByteArray());
+            signatureBuffers[i] = ByteBuffer.wrap(signatures[i]);
+            // A valid signature, but for a different item.
+            signer.update(new Transaction("user", 2, i).toByteArray());
+            forgedSignatures[i] = signer.sign();
+        }
+
+        userIds = new String[USER_COUNT];
+        for (int i = 0; i < USER_COUNT; i++) {
+            userIds[i] = "user" + i;
+        }
+
+        replayedTransaction = new Transaction("user", 1, -1);
+        signer.update(replayedTransaction.toByteArray());
+        replayedSignature = signer.sign();
+        storeBackend.verify(replayedTransaction, replayedSignature);
+    }
+
+    private int nextIndex() {
+        return (next.getAndIncrement() & Integer.MAX_VALUE) % POOL_SIZE;
+    }
+
+    @Benchmark
+    public boolean enroll() {
+        // Without a password, which is measured by PasswordHasherBenchmark.
+        return storeBackend.enroll(userIds[nextIndex() % USER_COUNT], null, keyPair.getPublic());
+    }
+
+    @Benchmark
+    public boolean verifyValid() {
+        int i = nextIndex();
+        return storeBackend.verify(transactions[i], signatures[i]);
+    }
+
+    @Benchmark
+    public VerifyOutcome verifyValidSigned() {
+        int i = nextIndex();
+        return storeBackend.verifyWithOutcome(signedTransactions[i], signatureBuffers[i]);
+    }
+
+    @Benchmark
+    public boolean verifyInvalid() {
+        int i = nextIndex();
+        return storeBackend.verify(transactions[i], forgedSignatures[i]);
+    }
+
+    @Benchmark
+    public boolean verifyReplayed() {
+        return storeBackend.verify(replayedTransaction, replayedSignature);
+    }
+}
@@ -0,0 +1,80 @@
+package np.com.grishma.fingerprintmanagerdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.TransactionCodec;
+
+/**
+ * Benchmarks the encoding, the decoding and the hashing of {@link Transaction}. A new transaction
+ * is created for every call of the {@code fresh} benchmarks, so they don't profit from the cached
+ * encoding and hash code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+
+    private final Transaction transaction = new Transaction("user", 1, 42);
+    private final Transaction equalTransaction = new Transaction("user", 1, 42);
+    private final ByteBuffer frame = encodeFrame(transaction);
+    private long nonce;
+
+    private static ByteBuffer encodeFrame(Transaction transaction) {
+        ByteBuffer frame = ByteBuffer.allocate(TransactionCodec.encodedLength(transaction));
+        TransactionCodec.encode(transaction, frame);
+        frame.flip();
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+        return transaction.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] toByteArrayFresh() {
+        return new Transaction("user", 1, nonce++).toByteArray();
+    }
+
+    @Benchmark
+    public int hashCodeCached() {
+        return transaction.hashCode();
+    }
+
+    @Benchmark
+    public int hashCodeFresh() {
+        return new Transaction("user", 1, nonce++).hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsEqual() {
+        return transaction.equals(equalTransaction);
+    }
+
+    @Benchmark
+    public Transaction decode() {
+        frame.rewind();
+        return TransactionCodec.decode(frame);
+    }
+
+    @Benchmark
+    public ByteBuffer readSignedPayload() {
+        frame.rewind();
+        return TransactionCodec.readSignedPayload(frame);
+    }
+}
@@ -0,0 +1,212 @@
+package np.com.grishma.fingerprintmanagerdemo.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPrivateKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The P-256 key pairs of the synthetic users, generated once and kept in a file so later runs
+ * don't spend minutes generating them again.
+ * <p>
+ * The file starts with {@link #MAGIC} and the number of key pairs, followed by a record of
+ * {@value #RECORD_LENGTH} bytes per key pair: the private value and the X.509 encoding of the
+ * public key. The file is mapped into memory rather than read, so millions of key pairs don't
+ * take any heap; a private key is decoded every time it is needed, which costs microseconds
+ * compared to the milliseconds of a signature.
+ */
+public class KeyPairCache {
+
+    /** "KPC" and the format version 1 */
+    public static final int MAGIC = 0x4B504301;
+    private static final int HEADER_LENGTH = 8;
+    private static final int PRIVATE_LENGTH = 32;
+    /** The length of the X.509 encoding of an uncompressed P-256 public key */
+    private static final int PUBLIC_LENGTH = 91;
+    private static final int RECORD_LENGTH = PRIVATE_LENGTH + PUBLIC_LENGTH;
+    /** The most key pairs a single mapping can hold */
+    public static final int MAX_KEY_PAIRS = (Integer.MAX_VALUE - HEADER_LENGTH) / RECORD_LENGTH;
+    private static final int PROGRESS_STEP = 10_000;
+
+    private final MappedByteBuffer records;
+    private final int size;
+    private final ECParameterSpec params;
+    private final ThreadLocal<KeyFactory> keyFactories = new ThreadLocal<>();
+
+    private KeyPairCache(MappedByteBuffer records, int size, ECParameterSpec params) {
+        this.records = records;
+        this.size = size;
+        this.params = params;
+    }
+
+    /**
+     * Opens the cache, generating the key pairs it doesn't hold yet on all CPUs.
+     *
+     * @param file     the file of the cache, created if it doesn't exist
+     * @param keyPairs the number of key pairs needed
+     * @throws IOException if the file can't be read or written, or isn't a cache of key pairs
+     */
+    public static KeyPairCache open(File file, int keyPairs) throws IOException {
+        if (keyPairs < 0 || keyPairs > MAX_KEY_PAIRS) {
+            throw new IllegalArgumentException("Invalid number of key pairs: " + keyPairs);
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            int existing = 0;
+            if (randomAccessFile.length() >= HEADER_LENGTH) {
+                if (randomAccessFile.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a key pair cache");
+                }
+                existing = randomAccessFile.readInt();
+            }
+            if (existing < keyPairs) {
+                generate(channel, existing, keyPairs);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.putInt(MAGIC).putInt(keyPairs).flip();
+                channel.write(header, 0);
+                channel.force(true);
+                existing = keyPairs;
+            }
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH,
+                    (long) existing * RECORD_LENGTH);
+            return new KeyPairCache(records, existing, p256Params());
+        }
+    }
+
+    private static ECParameterSpec p256Params() throws IOException {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            return parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("P-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Generates the key pairs from {@code from} to {@code to} exclusive and writes their records.
+     */
+    private static void generate(final FileChannel channel, final int from, final int to)
+            throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final AtomicInteger next = new AtomicInteger(from);
+        final long start = System.nanoTime();
+        System.out.printf("Generating %,d key pairs%n", to - from);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                        generator.initialize(new ECGenParameterSpec("secp256r1"));
+                        ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+                        int index;
+                        while ((index = next.getAndIncrement()) < to) {
+                            KeyPair keyPair = generator.generateKeyPair();
+                            record.clear();
+                            putUnsigned(record, ((ECPrivateKey) keyPair.getPrivate()).getS());
+                            byte[] encoded = keyPair.getPublic().getEncoded();
+                            if (encoded.length != PUBLIC_LENGTH) {
+                                throw new IOException("Unexpected public key encoding of "
+                                        + encoded.length + " bytes");
+                            }
+                            record.put(encoded).flip();
+                            channel.write(record, HEADER_LENGTH + (long) index * RECORD_LENGTH);
+                            if ((index - from + 1) % PROGRESS_STEP == 0) {
+                                System.out.printf("  %,d of %,d after %d s%n", index - from + 1,
+                                        to - from, (System.nanoTime() - start) / 1_000_000_000);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to generate key pairs", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating key pairs", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes a non-negative value below 2^256 as 32 big-endian bytes.
+     */
+    private static void putUnsigned(ByteBuffer buffer, BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        int length = Math.min(bytes.length, PRIVATE_LENGTH);
+        for (int i = length; i < PRIVATE_LENGTH; i++) {
+            buffer.put((byte) 0);
+        }
+        buffer.put(bytes, bytes.length - length, length);
+    }
+
+    /**
+     * @return the number of key pairs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a new array with the X.509 encoding of the public key of the key pair.
+     */
+    public byte[] getEncodedPublicKey(int index) {
+        byte[] encoded = new byte[PUBLIC_LENGTH];
+        ByteBuffer record = records.duplicate();
+        record.position(checkIndex(index) * RECORD_LENGTH + PRIVATE_LENGTH);
+        record.get(encoded);
+        return encoded;
+    }
+
+    /**
+     * @return the private key of the key pair.
+     */
+    public PrivateKey getPrivateKey(int index) throws GeneralSecurityException {
+        byte[] s = new byte[PRIVATE_LENGTH];
+        ByteBuffer record = records.duplicate();
+        record.position(checkIndex(index) * RECORD_LENGTH);
+        record.get(s);
+        KeyFactory keyFactory = keyFactories.get();
+        if (keyFactory == null) {
+            keyFactory = KeyFactory.getInstance("EC");
+            keyFactories.set(keyFactory);
+        }
+        return keyFactory.generatePrivate(new ECPrivateKeySpec(new BigInteger(1, s), params));
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Key pair " + index + " of " + size);
+        }
+        return index;
+    }
+}
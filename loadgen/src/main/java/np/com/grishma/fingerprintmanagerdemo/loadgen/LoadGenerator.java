@@ -0,0 +1,453 @@
+package np.com.grishma.fingerprintmanagerdemo.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.LatencyHistogram;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.P256SignatureVerifier;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.PartitionedStoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.RemoteStoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Enrolls synthetic users with the key pairs of a {@link KeyPairCache} and drives signed
+ * transactions against a {@link StoreBackend}, reporting throughput, latency percentiles and the
+ * live heap while it runs.
+ * <p>
+ * Every worker thread signs fresh transactions of random users and mixes in replays, forgeries
+ * and requests of unknown users as set by the {@link TrafficMix}. Replays and forgeries reuse the
+ * transactions and signatures the worker had accepted a moment ago, so only valid requests pay
+ * for a signature. The latency is measured around the backend call only, signing is reported
+ * separately. Every answer is compared with the outcome expected for the kind of request, so a
+ * soak run also shows whether the backend still decides correctly under load.
+ * <p>
+ * The heap is reported as the sum of the heap pools right after their last collection, which
+ * follows the live data of an in-process backend without forcing collections.
+ */
+public class LoadGenerator {
+
+    private static final String USER_PREFIX = "user";
+    /** The number of recently accepted transactions a worker keeps for replays and forgeries */
+    private static final int RECENT = 64;
+    private static final int ENROLL_PROGRESS_STEP = 100_000;
+    private static final TrafficMix.Kind[] KINDS = TrafficMix.Kind.values();
+
+    private final StoreBackend storeBackend;
+    private final KeyPairCache keyPairs;
+    private final int users;
+    private final TrafficMix mix;
+    private final int threads;
+
+    /**
+     * @param storeBackend the backend to load
+     * @param keyPairs     the key pairs of the users
+     * @param users        the number of users, at most the number of key pairs
+     * @param mix          the shares of the kinds of requests
+     * @param threads      the number of threads sending requests
+     */
+    public LoadGenerator(StoreBackend storeBackend, KeyPairCache keyPairs, int users,
+                         TrafficMix mix, int threads) {
+        if (users < 1 || users > keyPairs.size()) {
+            throw new IllegalArgumentException("Invalid number of users: " + users);
+        }
+        this.storeBackend = storeBackend;
+        this.keyPairs = keyPairs;
+        this.users = users;
+        this.mix = mix;
+        this.threads = threads;
+    }
+
+    /**
+     * Enrolls all users without passwords, spread over the threads.
+     *
+     * @return the number of enrollments the backend rejected.
+     */
+    public int enroll(final PrintStream out) throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final long start = System.nanoTime();
+        List<Thread> enrollers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int user;
+                    while ((user = next.getAndIncrement()) < users) {
+                        if (!storeBackend.enroll(USER_PREFIX + user, null, "EC",
+                                keyPairs.getEncodedPublicKey(user))) {
+                            failures.incrementAndGet();
+                        }
+                        if ((user + 1) % ENROLL_PROGRESS_STEP == 0) {
+                            out.printf("  enrolled %,d of %,d after %d s%n", user + 1, users,
+                                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+                        }
+                    }
+                }
+            }, "enroller-" + i);
+            thread.start();
+            enrollers.add(thread);
+        }
+        for (Thread thread : enrollers) {
+            thread.join();
+        }
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        out.printf("Enrolled %,d users in %,d ms (%,d/s), %,d failed%n", users, millis,
+                users * 1000L / millis, failures.get());
+        return failures.get();
+    }
+
+    /**
+     * Sends requests for the duration and prints a line of statistics every interval.
+     *
+     * @return the totals of the run.
+     */
+    public Results run(long duration, long reportInterval, TimeUnit unit, PrintStream out)
+            throws InterruptedException {
+        final Results results = new Results();
+        final long nonceBase = new SecureRandom().nextLong();
+        final long deadline = System.nanoTime() + unit.toNanos(duration);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final int worker = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        new Worker(nonceBase + ((long) worker << 40), results).run(deadline);
+                    } catch (GeneralSecurityException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }, "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+
+        long start = System.nanoTime();
+        long startHeap = liveHeap();
+        long previousRequests = 0;
+        long previousTime = start;
+        // The interval statistics are the differences of snapshots of the totals, so no request
+        // is lost between two intervals.
+        LatencyHistogram.Snapshot previousLatency = results.latency.snapshot();
+        out.printf("%8s %10s %9s %9s %9s %9s %9s %10s%n", "time s", "req/s", "p50 us",
+                "p99 us", "p99.9 us", "max us", "sign us", "heap MB");
+        while (System.nanoTime() < deadline) {
+            long sleep = Math.min(unit.toNanos(reportInterval), deadline - System.nanoTime());
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, sleep));
+            long now = System.nanoTime();
+            long requests = results.getRequests();
+            LatencyHistogram.Snapshot totalLatency = results.latency.snapshot();
+            LatencyHistogram.Snapshot latency = totalLatency.minus(previousLatency);
+            out.printf("%8d %,10d %,9d %,9d %,9d %,9d %,9d %,10d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(now - start),
+                    (requests - previousRequests) * TimeUnit.SECONDS.toNanos(1)
+                            / Math.max(1, now - previousTime),
+                    micros(latency.getValueAtPercentile(50)),
+                    micros(latency.getValueAtPercentile(99)),
+                    micros(latency.getValueAtPercentile(99.9)), micros(latency.getMax()),
+                    micros((long) results.signLatency.snapshot().getMean()),
+                    liveHeap() >> 20);
+            previousRequests = requests;
+            previousTime = now;
+            previousLatency = totalLatency;
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        results.elapsedNanos = System.nanoTime() - start;
+        results.heapGrowth = liveHeap() - startHeap;
+        return results;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * @return the bytes used in the heap pools after their last collection.
+     */
+    static long liveHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Sends requests from one thread.
+     */
+    private class Worker {
+
+        private final Random random;
+        private final Results results;
+        private final Signature signer;
+        private final Transaction[] recentTransactions = new Transaction[RECENT];
+        private final byte[][] recentSignatures = new byte[RECENT][];
+        private int recentCount;
+        private long nonce;
+
+        Worker(long firstNonce, Results results) throws GeneralSecurityException {
+            random = new Random(firstNonce);
+            this.results = results;
+            nonce = firstNonce;
+            signer = Signature.getInstance("SHA256withECDSA");
+        }
+
+        void run(long deadline) throws GeneralSecurityException {
+            while (System.nanoTime() < deadline) {
+                TrafficMix.Kind kind = mix.pick(random);
+                if (kind != TrafficMix.Kind.VALID && recentCount == 0) {
+                    // Nothing to replay or forge with yet.
+                    kind = TrafficMix.Kind.VALID;
+                }
+                int recent = random.nextInt(Math.max(1, Math.min(recentCount, RECENT)));
+                Transaction transaction;
+                byte[] signature;
+                switch (kind) {
+                    case VALID:
+                        int user = random.nextInt(users);
+                        transaction = new Transaction(USER_PREFIX + user, 1 + random.nextInt(1000),
+                                nonce++);
+                        long signStart = System.nanoTime();
+                        signer.initSign(keyPairs.getPrivateKey(user));
+                        signer.update(transaction.toByteArray());
+                        signature = signer.sign();
+                        results.signLatency.record(System.nanoTime() - signStart);
+                        break;
+                    case REPLAYED:
+                        transaction = recentTransactions[recent];
+                        signature = recentSignatures[recent];
+                        break;
+                    case FORGED:
+                        Transaction signed = recentTransactions[recent];
+                        transaction = new Transaction(signed.getUserId(), signed.getItemId() + 1,
+                                nonce++);
+                        signature = recentSignatures[recent];
+                        break;
+                    default:
+                        transaction = new Transaction("unknown" + random.nextInt(users), 1,
+                                nonce++);
+                        signature = recentSignatures[recent];
+                        break;
+                }
+
+                long start = System.nanoTime();
+                VerifyOutcome outcome = storeBackend.verifyWithOutcome(transaction, signature);
+                results.latency.record(System.nanoTime() - start);
+                results.count(kind, outcome);
+                if (kind == TrafficMix.Kind.VALID && outcome == VerifyOutcome.ACCEPTED) {
+                    recentTransactions[recentCount % RECENT] = transaction;
+                    recentSignatures[recentCount % RECENT] = signature;
+                    recentCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The totals of a run, updated by the workers while it runs.
+     */
+    public static final class Results {
+
+        private final AtomicLongArray requests = new AtomicLongArray(KINDS.length);
+        private final AtomicLongArray mismatches = new AtomicLongArray(KINDS.length);
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram signLatency = new LatencyHistogram();
+        private volatile long elapsedNanos;
+        private volatile long heapGrowth;
+
+        void count(TrafficMix.Kind kind, VerifyOutcome outcome) {
+            requests.incrementAndGet(kind.ordinal());
+            if (outcome != kind.getExpectedOutcome()) {
+                mismatches.incrementAndGet(kind.ordinal());
+            }
+        }
+
+        public long getRequests() {
+            long sum = 0;
+            for (TrafficMix.Kind kind : KINDS) {
+                sum += getRequests(kind);
+            }
+            return sum;
+        }
+
+        public long getRequests(TrafficMix.Kind kind) {
+            return requests.get(kind.ordinal());
+        }
+
+        /**
+         * @return the number of requests of the kind answered with another outcome than expected.
+         */
+        public long getMismatches(TrafficMix.Kind kind) {
+            return mismatches.get(kind.ordinal());
+        }
+
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency.snapshot();
+        }
+
+        /**
+         * @return the change of the live heap from the start to the end of the run in bytes.
+         */
+        public long getHeapGrowth() {
+            return heapGrowth;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(elapsedNanos));
+            builder.append(String.format("%,d requests in %,d s, %,d/s%n", getRequests(), seconds,
+                    getRequests() / seconds));
+            for (TrafficMix.Kind kind : KINDS) {
+                builder.append(String.format("  %-13s %,12d requests %,8d unexpected outcomes%n",
+                        kind.name().toLowerCase(), getRequests(kind), getMismatches(kind)));
+            }
+            builder.append("verify: ").append(latency.snapshot()).append('\n');
+            builder.append("sign: ").append(signLatency.snapshot()).append('\n');
+            builder.append(String.format("live heap growth: %,d MB", heapGrowth >> 20));
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Usage: {@code LoadGenerator [--users N] [--keys FILE] [--backend local|partitioned:N|URL]
+     * [--p256] [--no-enroll] [--threads N] [--mix MIX] [--duration D] [--report D]}
+     * <p>
+     * Durations are given like {@code 90s}, {@code 30m} or {@code 3h}. By default 100,000 users
+     * are loaded into an in-process {@link StoreBackendImpl} for a minute, with the key pairs
+     * cached in {@code loadgen-keys.bin} and the {@link TrafficMix#DEFAULT} mix. A URL loads a
+     * running service through a {@link RemoteStoreBackend}; {@code --no-enroll} skips the
+     * enrollment if it has kept the users of an earlier run. {@code --p256} verifies with the
+     * precomputed tables of a {@link P256SignatureVerifier}.
+     */
+    public static void main(String[] args) throws Exception {
+        int users = 100_000;
+        File keys = new File("loadgen-keys.bin");
+        String backend = "local";
+        boolean p256 = false;
+        boolean enroll = true;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        TrafficMix mix = TrafficMix.DEFAULT;
+        long durationSeconds = 60;
+        long reportSeconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users":
+                    users = Integer.parseInt(args[++i]);
+                    break;
+                case "--keys":
+                    keys = new File(args[++i]);
+                    break;
+                case "--backend":
+                    backend = args[++i];
+                    break;
+                case "--p256":
+                    p256 = true;
+                    break;
+                case "--no-enroll":
+                    enroll = false;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--mix":
+                    mix = TrafficMix.parse(args[++i]);
+                    break;
+                case "--duration":
+                    durationSeconds = parseSeconds(args[++i]);
+                    break;
+                case "--report":
+                    reportSeconds = parseSeconds(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        KeyPairCache keyPairs = KeyPairCache.open(keys, users);
+        StoreBackend storeBackend = createBackend(backend, p256);
+        System.out.printf("%,d users, %d threads, mix %s, backend %s%n", users, threads, mix,
+                backend);
+        LoadGenerator loadGenerator = new LoadGenerator(storeBackend, keyPairs, users, mix,
+                threads);
+        if (enroll) {
+            loadGenerator.enroll(System.out);
+        }
+        Results results = loadGenerator.run(durationSeconds, reportSeconds, TimeUnit.SECONDS,
+                System.out);
+        System.out.println(results);
+    }
+
+    private static StoreBackend createBackend(String backend, boolean p256) throws IOException {
+        if (backend.startsWith("http://") || backend.startsWith("https://")) {
+            return new RemoteStoreBackend(new URL(backend));
+        }
+        if ("local".equals(backend)) {
+            return createPartition(p256);
+        }
+        if (backend.startsWith("partitioned:")) {
+            int partitions = Integer.parseInt(backend.substring("partitioned:".length()));
+            PartitionedStoreBackend partitioned = new PartitionedStoreBackend();
+            for (int i = 0; i < partitions; i++) {
+                partitioned.addPartition("partition-" + i, createPartition(p256));
+            }
+            return partitioned;
+        }
+        throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+
+    private static StoreBackendImpl createPartition(boolean p256) {
+        StoreBackendImpl.StoreBackendImplBuilder builder =
+                new StoreBackendImpl.StoreBackendImplBuilder();
+        if (p256) {
+            builder.setSignatureVerifier(new P256SignatureVerifier());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the seconds of a duration like 90s, 30m or 3h, or a plain number of seconds.
+     */
+    static long parseSeconds(String duration) {
+        char unit = duration.charAt(duration.length() - 1);
+        if (Character.isDigit(unit)) {
+            return Long.parseLong(duration);
+        }
+        long value = Long.parseLong(duration.substring(0, duration.length() - 1));
+        switch (unit) {
+            case 's':
+                return value;
+            case 'm':
+                return TimeUnit.MINUTES.toSeconds(value);
+            case 'h':
+                return TimeUnit.HOURS.toSeconds(value);
+            default:
+                throw new IllegalArgumentException("Invalid duration: " + duration);
+        }
+    }
+}
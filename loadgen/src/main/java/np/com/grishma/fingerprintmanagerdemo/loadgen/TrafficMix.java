@@ -0,0 +1,105 @@
+package np.com.grishma.fingerprintmanagerdemo.loadgen;
+
+import java.util.Random;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * The shares of the kinds of requests the load generator sends.
+ */
+public class TrafficMix {
+
+    /**
+     * A kind of request and the outcome the backend is expected to answer it with.
+     */
+    public enum Kind {
+        /** A fresh transaction signed by the user's key */
+        VALID(VerifyOutcome.ACCEPTED),
+        /** A transaction and signature that were accepted a moment ago */
+        REPLAYED(VerifyOutcome.REPLAYED),
+        /** A fresh transaction with the signature of another transaction of the user */
+        FORGED(VerifyOutcome.BAD_SIGNATURE),
+        /** A transaction of a user that was never enrolled */
+        UNKNOWN_USER(VerifyOutcome.UNKNOWN_USER);
+
+        private final VerifyOutcome expectedOutcome;
+
+        Kind(VerifyOutcome expectedOutcome) {
+            this.expectedOutcome = expectedOutcome;
+        }
+
+        public VerifyOutcome getExpectedOutcome() {
+            return expectedOutcome;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    /** 90% valid requests and a few of each kind of rejected ones */
+    public static final TrafficMix DEFAULT = parse("valid=90,replayed=4,forged=4,unknown_user=2");
+
+    private final int[] weights;
+    /** The running sums of the weights */
+    private final int[] thresholds;
+
+    private TrafficMix(int[] weights) {
+        this.weights = weights;
+        thresholds = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            thresholds[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("The mix has no requests");
+        }
+    }
+
+    /**
+     * Parses a mix like {@code valid=90,replayed=4,forged=4,unknown_user=2}. The weights are
+     * relative, kinds that aren't listed aren't sent.
+     *
+     * @throws IllegalArgumentException if the mix can't be parsed
+     */
+    public static TrafficMix parse(String mix) {
+        int[] weights = new int[KINDS.length];
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split("=");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid part of the mix: " + part);
+            }
+            Kind kind = Kind.valueOf(nameAndWeight[0].trim().toUpperCase());
+            int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight: " + part);
+            }
+            weights[kind.ordinal()] = weight;
+        }
+        return new TrafficMix(weights);
+    }
+
+    /**
+     * @return a kind picked at random with the probabilities of the mix.
+     */
+    public Kind pick(Random random) {
+        int value = random.nextInt(thresholds[thresholds.length - 1]);
+        for (int i = 0; i < thresholds.length; i++) {
+            if (value < thresholds[i]) {
+                return KINDS[i];
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Kind kind : KINDS) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(kind.name().toLowerCase()).append('=').append(weights[kind.ordinal()]);
+        }
+        return builder.toString();
+    }
+}
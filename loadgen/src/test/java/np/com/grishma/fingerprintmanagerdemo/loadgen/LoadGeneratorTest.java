@@ -0,0 +1,101 @@
+package np.com.grishma.fingerprintmanagerdemo.loadgen;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+
+    private static final PrintStream NO_OUTPUT = new PrintStream(new ByteArrayOutputStream());
+
+    @Test
+    public void keyPairCache_keepsKeyPairsAcrossOpens() throws Exception {
+        File file = File.createTempFile("keys", ".bin");
+        file.deleteOnExit();
+        KeyPairCache first = KeyPairCache.open(file, 4);
+        long length = file.length();
+        KeyPairCache second = KeyPairCache.open(file, 3);
+        assertEquals(length, file.length());
+        assertEquals(4, second.size());
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(first.getEncodedPublicKey(i), second.getEncodedPublicKey(i));
+        }
+        assertFalse(Arrays.equals(first.getEncodedPublicKey(0), first.getEncodedPublicKey(1)));
+
+        KeyPairCache grown = KeyPairCache.open(file, 6);
+        assertEquals(6, grown.size());
+        assertArrayEquals(first.getEncodedPublicKey(3), grown.getEncodedPublicKey(3));
+
+        // The private key signs what the public key verifies.
+        Transaction transaction = new Transaction("user", 1, 1);
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(grown.getPrivateKey(5));
+        signature.update(transaction.toByteArray());
+        StoreBackendImpl storeBackend = new StoreBackendImpl.StoreBackendImplBuilder().build();
+        assertTrue(storeBackend.enroll("user", null, "EC", grown.getEncodedPublicKey(5)));
+        assertEquals(VerifyOutcome.ACCEPTED,
+                storeBackend.verifyWithOutcome(transaction, signature.sign()));
+    }
+
+    @Test
+    public void trafficMix_parse() {
+        TrafficMix mix = TrafficMix.parse("valid=3, forged=1");
+        assertEquals("valid=3,replayed=0,forged=1,unknown_user=0", mix.toString());
+        Random random = new Random(1);
+        int forged = 0;
+        for (int i = 0; i < 4000; i++) {
+            TrafficMix.Kind kind = mix.pick(random);
+            assertTrue(kind == TrafficMix.Kind.VALID || kind == TrafficMix.Kind.FORGED);
+            if (kind == TrafficMix.Kind.FORGED) {
+                forged++;
+            }
+        }
+        assertTrue(forged > 850 && forged < 1150);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trafficMix_parseRejectsUnknownKinds() {
+        TrafficMix.parse("valid=1,stolen=1");
+    }
+
+    @Test
+    public void run_getsExpectedOutcomes() throws Exception {
+        File file = File.createTempFile("keys", ".bin");
+        file.deleteOnExit();
+        KeyPairCache keyPairs = KeyPairCache.open(file, 8);
+        StoreBackendImpl storeBackend = new StoreBackendImpl.StoreBackendImplBuilder().build();
+        LoadGenerator loadGenerator = new LoadGenerator(storeBackend, keyPairs, 8,
+                TrafficMix.parse("valid=50,replayed=20,forged=20,unknown_user=10"), 2);
+
+        assertEquals(0, loadGenerator.enroll(NO_OUTPUT));
+        LoadGenerator.Results results = loadGenerator.run(1500, 500, TimeUnit.MILLISECONDS,
+                NO_OUTPUT);
+
+        assertTrue(results.getRequests(TrafficMix.Kind.VALID) > 0);
+        assertTrue(results.getRequests(TrafficMix.Kind.FORGED) > 0);
+        assertEquals(results.getRequests(), results.getLatency().getCount());
+        for (TrafficMix.Kind kind : TrafficMix.Kind.values()) {
+            assertEquals(kind.name(), 0, results.getMismatches(kind));
+        }
+    }
+
+    @Test
+    public void parseSeconds() {
+        assertEquals(90, LoadGenerator.parseSeconds("90"));
+        assertEquals(90, LoadGenerator.parseSeconds("90s"));
+        assertEquals(1800, LoadGenerator.parseSeconds("30m"));
+        assertEquals(10800, LoadGenerator.parseSeconds("3h"));
+    }
+}
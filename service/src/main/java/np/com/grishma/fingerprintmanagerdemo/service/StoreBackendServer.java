@@ -0,0 +1,325 @@
+package np.com.grishma.fingerprintmanagerdemo.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.CartTransaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.EnrollmentLog;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.InstrumentedStoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.RateLimiter;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.ReplayCache;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendProtocol;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.TransactionCodec;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+/**
+ * Hosts a {@link StoreBackend} behind a small HTTP endpoint speaking the
+ * {@link StoreBackendProtocol}, so it can be load tested and deployed as a real backend.
+ * <p>
+ * Connections are kept alive and requests pipelined on a connection are answered in order. Each
+ * request is handled on a thread of a fixed size pool, so slow verifications don't hold up the
+ * thread accepting connections.
+ */
+public class StoreBackendServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final long COMPACTION_PERIOD_MINUTES = 60;
+    /** The enrollment log is compacted once more than this fraction of it are stale records */
+    private static final double MAX_ENROLLMENT_LOG_GARBAGE_RATIO = 0.5;
+    private static final long METRICS_PERIOD_MINUTES = 1;
+    private static final long REPLAY_SNAPSHOT_PERIOD_SECONDS = 60;
+    private static final String DEFAULT_USER_RATE = "10";
+    private static final String DEFAULT_USER_BURST = "20";
+    private static final String DEFAULT_GLOBAL_RATE = "Infinity";
+    private static final String DEFAULT_GLOBAL_BURST = "1";
+    /** Upper bound of the size of a single verification request */
+    private static final int MAX_REQUEST_LENGTH = 1024 * 1024;
+
+    private final StoreBackend storeBackend;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    /**
+     * @param storeBackend the backend the requests are handled by
+     * @param address      the address to listen on, port 0 picks a free port
+     * @param threads      the number of threads handling requests
+     */
+    public StoreBackendServer(StoreBackend storeBackend, InetSocketAddress address, int threads)
+            throws IOException {
+        this.storeBackend = storeBackend;
+        httpServer = HttpServer.create(address, 0);
+        executor = Executors.newFixedThreadPool(threads);
+        httpServer.setExecutor(executor);
+        httpServer.createContext(StoreBackendProtocol.ENROLL_PATH, new EnrollHandler());
+        httpServer.createContext(StoreBackendProtocol.VERIFY_PATH, new VerifyHandler());
+        httpServer.createContext(StoreBackendProtocol.VERIFY_PASSWORD_PATH,
+                new VerifyPasswordHandler());
+        httpServer.createContext(StoreBackendProtocol.VERIFY_ALL_PATH, new VerifyAllHandler());
+        httpServer.createContext(StoreBackendProtocol.VERIFY_CART_PATH, new VerifyCartHandler());
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the running ones and shuts down the
+     * request threads.
+     */
+    public void stop() throws InterruptedException {
+        httpServer.stop(1);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the address the server listens on, with the actual port if port 0 was requested.
+     */
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    /**
+     * Starts a server backed by a {@link StoreBackendImpl}.
+     * <p>
+     * Usage: {@code StoreBackendServer [port] [bind address] [enrollment log] [replay snapshot]},
+     * by default port 8080 on loopback with everything kept in memory only. With an enrollment log
+     * the enrollments survive restarts and the log is compacted periodically. With a replay
+     * snapshot the remembered transactions are restored from it at startup and written to it
+     * every minute and on shutdown. Pass {@code -} to skip the enrollment log. The metrics of the
+     * backend are printed every minute.
+     * <p>
+     * Verifications are limited by a {@link RateLimiter}, configured with the system properties
+     * {@code rateLimit.userRate} and {@code rateLimit.userBurst} (10 per second and 20 at once by
+     * default) and {@code rateLimit.globalRate} and {@code rateLimit.globalBurst} (no global limit
+     * by default). Set {@code rateLimit.userRate} to {@code Infinity} to turn the limiter off.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress bindAddress = args.length > 1
+                ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        StoreBackendImpl.StoreBackendImplBuilder builder =
+                new StoreBackendImpl.StoreBackendImplBuilder();
+        if (args.length > 2 && !"-".equals(args[2])) {
+            final EnrollmentLog enrollmentLog = EnrollmentLog.open(new File(args[2]));
+            builder.setEnrollmentLog(enrollmentLog);
+            ScheduledExecutorService compaction = Executors.newSingleThreadScheduledExecutor();
+            compaction.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        enrollmentLog.compactIfNeeded(MAX_ENROLLMENT_LOG_GARBAGE_RATIO);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }, COMPACTION_PERIOD_MINUTES, COMPACTION_PERIOD_MINUTES, TimeUnit.MINUTES);
+        }
+        if (args.length > 3) {
+            final File snapshotFile = new File(args[3]);
+            final ReplayCache replayCache = new ReplayCache();
+            if (snapshotFile.exists()) {
+                long start = System.nanoTime();
+                long restored = replayCache.restoreSnapshot(snapshotFile);
+                System.out.println("Restored " + restored + " transactions in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            }
+            builder.setReplayCache(replayCache);
+            final Runnable writeSnapshot = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        replayCache.writeSnapshot(snapshotFile);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor();
+            snapshots.scheduleWithFixedDelay(writeSnapshot, REPLAY_SNAPSHOT_PERIOD_SECONDS,
+                    REPLAY_SNAPSHOT_PERIOD_SECONDS, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(writeSnapshot));
+        }
+        double userRate = Double.parseDouble(
+                System.getProperty("rateLimit.userRate", DEFAULT_USER_RATE));
+        if (!Double.isInfinite(userRate)) {
+            final RateLimiter rateLimiter = new RateLimiter(userRate,
+                    Integer.parseInt(System.getProperty("rateLimit.userBurst", DEFAULT_USER_BURST)),
+                    Double.parseDouble(
+                            System.getProperty("rateLimit.globalRate", DEFAULT_GLOBAL_RATE)),
+                    Integer.parseInt(
+                            System.getProperty("rateLimit.globalBurst", DEFAULT_GLOBAL_BURST)));
+            builder.setRateLimiter(rateLimiter);
+            ScheduledExecutorService sweeps = Executors.newSingleThreadScheduledExecutor();
+            sweeps.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    rateLimiter.sweep();
+                }
+            }, rateLimiter.getIdleNanos(), rateLimiter.getIdleNanos(), TimeUnit.NANOSECONDS);
+        }
+        final InstrumentedStoreBackend storeBackend = new InstrumentedStoreBackend(builder.build());
+        ScheduledExecutorService metrics = Executors.newSingleThreadScheduledExecutor();
+        metrics.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                System.out.println(storeBackend.snapshot());
+            }
+        }, METRICS_PERIOD_MINUTES, METRICS_PERIOD_MINUTES, TimeUnit.MINUTES);
+        StoreBackendServer server = new StoreBackendServer(storeBackend,
+                new InetSocketAddress(bindAddress, port),
+                4 * Runtime.getRuntime().availableProcessors());
+        server.start();
+        System.out.println("Listening on " + server.getAddress());
+    }
+
+    /**
+     * Reads a POST body and writes the response body, answering malformed requests with 400.
+     */
+    private abstract static class BinaryHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendEmpty(exchange, HttpURLConnection.HTTP_BAD_METHOD);
+                    return;
+                }
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (InputStream requestBody = exchange.getRequestBody()) {
+                    handle(new DataInputStream(requestBody), new DataOutputStream(body));
+                } catch (IOException | IllegalArgumentException | BufferUnderflowException e) {
+                    sendEmpty(exchange, HttpURLConnection.HTTP_BAD_REQUEST);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type",
+                        StoreBackendProtocol.CONTENT_TYPE);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.size());
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    body.writeTo(responseBody);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+            // Closing the request body drains it, otherwise the connection can't be reused.
+            exchange.getRequestBody().close();
+            exchange.sendResponseHeaders(status, -1);
+        }
+
+        abstract void handle(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+    private class EnrollHandler extends BinaryHandler {
+        @Override
+        void handle(DataInputStream in, DataOutputStream out) throws IOException {
+            String userId = in.readUTF();
+            String password = StoreBackendProtocol.readOptionalUtf(in);
+            String keyAlgorithm = null;
+            byte[] encodedPublicKey = null;
+            if (in.readBoolean()) {
+                keyAlgorithm = in.readUTF();
+                encodedPublicKey = StoreBackendProtocol.readBytes(in);
+            }
+            out.writeBoolean(storeBackend.enroll(userId, password, keyAlgorithm,
+                    encodedPublicKey));
+        }
+    }
+
+    /**
+     * Verifies the transaction over the bytes it was received as, without decoding it.
+     */
+    private class VerifyHandler extends BinaryHandler {
+        @Override
+        void handle(DataInputStream in, DataOutputStream out) throws IOException {
+            ByteBuffer request = readFully(in);
+            ByteBuffer signedTransaction = TransactionCodec.readSignedPayload(request);
+            ByteBuffer signature = StoreBackendProtocol.readBytes(request);
+            StoreBackendProtocol.writeOutcome(out,
+                    storeBackend.verifyWithOutcome(signedTransaction, signature));
+        }
+
+        private ByteBuffer readFully(InputStream in) throws IOException {
+            byte[] buffer = new byte[256];
+            int length = 0;
+            int count;
+            while ((count = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+                if (length == buffer.length) {
+                    if (length >= MAX_REQUEST_LENGTH) {
+                        throw new IOException("Request too long");
+                    }
+                    buffer = Arrays.copyOf(buffer, 2 * length);
+                }
+            }
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+    }
+
+    private class VerifyPasswordHandler extends BinaryHandler {
+        @Override
+        void handle(DataInputStream in, DataOutputStream out) throws IOException {
+            Transaction transaction = StoreBackendProtocol.readTransaction(in);
+            out.writeBoolean(storeBackend.verify(transaction,
+                    StoreBackendProtocol.readOptionalUtf(in)));
+        }
+    }
+
+    private class VerifyAllHandler extends BinaryHandler {
+
+        /** Upper bound of the batch size, so a corrupt count can't make the server allocate GBs */
+        private static final int MAX_BATCH_SIZE = 10_000;
+
+        @Override
+        void handle(DataInputStream in, DataOutputStream out) throws IOException {
+            int count = in.readInt();
+            if (count < 0 || count > MAX_BATCH_SIZE) {
+                throw new IOException("Invalid batch size: " + count);
+            }
+            Transaction[] transactions = new Transaction[count];
+            byte[][] signatures = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                transactions[i] = StoreBackendProtocol.readTransaction(in);
+                signatures[i] = StoreBackendProtocol.readBytes(in);
+            }
+            VerifyOutcome[] results = storeBackend.verifyAll(transactions, signatures);
+            out.writeInt(results.length);
+            for (VerifyOutcome result : results) {
+                StoreBackendProtocol.writeOutcome(out, result);
+            }
+        }
+    }
+
+    private class VerifyCartHandler extends BinaryHandler {
+        @Override
+        void handle(DataInputStream in, DataOutputStream out) throws IOException {
+            CartTransaction cart = StoreBackendProtocol.readCart(in);
+            byte[] signature = StoreBackendProtocol.readBytes(in);
+            StoreBackendProtocol.writeOutcome(out, storeBackend.verifyWithOutcome(cart, signature));
+        }
+    }
+}
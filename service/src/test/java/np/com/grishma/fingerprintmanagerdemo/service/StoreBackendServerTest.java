@@ -0,0 +1,201 @@
+package np.com.grishma.fingerprintmanagerdemo.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.CartTransaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.RemoteStoreBackend;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendImpl;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.StoreBackendProtocol;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.Transaction;
+import np.com.grishma.fingerprintmanagerdemo.withdialogactivity.server.VerifyOutcome;
+
+import static org.junit.Assert.*;
+
+public class StoreBackendServerTest {
+
+    private KeyPair keyPair;
+    private StoreBackendServer server;
+    private RemoteStoreBackend remoteStoreBackend;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+        server = new StoreBackendServer(new StoreBackendImpl(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+        server.start();
+        remoteStoreBackend = new RemoteStoreBackend(new URL("http", "127.0.0.1",
+                server.getAddress().getPort(), "/"));
+        assertTrue(remoteStoreBackend.enroll("user", "password", keyPair.getPublic()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private byte[] sign(Transaction transaction) throws Exception {
+        return sign(transaction.toByteArray());
+    }
+
+    private byte[] sign(byte[] data) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(data);
+        return signature.sign();
+    }
+
+    @Test
+    public void verify_overHttp() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        byte[] signature = sign(transaction);
+
+        assertTrue(remoteStoreBackend.verify(transaction, signature));
+        assertFalse(remoteStoreBackend.verify(transaction, signature));
+        assertFalse(remoteStoreBackend.verify(new Transaction("user", 1, 43), signature));
+        assertEquals(VerifyOutcome.UNKNOWN_USER, remoteStoreBackend.verifyWithOutcome(
+                new Transaction("somebody", 1, 42), signature));
+        assertTrue(remoteStoreBackend.verify(transaction, "password"));
+    }
+
+    @Test
+    public void enrollWithoutPassword_overHttp() throws Exception {
+        Transaction transaction = new Transaction("keyOnly", 1, 42);
+
+        assertTrue(remoteStoreBackend.enroll("keyOnly", null, keyPair.getPublic()));
+        assertTrue(remoteStoreBackend.verify(transaction, sign(transaction)));
+        assertFalse(remoteStoreBackend.verify(transaction, "password"));
+        assertFalse(remoteStoreBackend.verify(transaction, (String) null));
+    }
+
+    @Test
+    public void verifySignedTransaction_overHttp() throws Exception {
+        Transaction transaction = new Transaction("user", 1, 42);
+        ByteBuffer signature = ByteBuffer.wrap(sign(transaction));
+
+        assertEquals(VerifyOutcome.ACCEPTED, remoteStoreBackend.verifyWithOutcome(
+                ByteBuffer.wrap(transaction.toByteArray()), signature));
+        assertEquals(VerifyOutcome.REPLAYED, remoteStoreBackend.verifyWithOutcome(
+                ByteBuffer.wrap(transaction.toByteArray()), signature));
+    }
+
+    @Test
+    public void verifyAll_overHttp() throws Exception {
+        Transaction first = new Transaction("user", 1, 1);
+        Transaction second = new Transaction("user", 1, 2);
+
+        VerifyOutcome[] results = remoteStoreBackend.verifyAll(
+                new Transaction[]{first, second, first},
+                new byte[][]{sign(first), sign(first), sign(first)});
+
+        assertArrayEquals(new VerifyOutcome[]{VerifyOutcome.ACCEPTED,
+                VerifyOutcome.BAD_SIGNATURE, VerifyOutcome.REPLAYED}, results);
+    }
+
+    @Test
+    public void verifyCart_overHttp() throws Exception {
+        // Large enough for the signed form to exceed the limit of other byte arrays.
+        long[] itemIds = new long[CartTransaction.MAX_ITEMS];
+        int[] quantities = new int[itemIds.length];
+        Random random = new Random(7);
+        for (int i = 0; i < itemIds.length; i++) {
+            itemIds[i] = random.nextLong();
+            quantities[i] = 1 + random.nextInt(10);
+        }
+        CartTransaction cart = new CartTransaction("user", itemIds, quantities, 42);
+        assertTrue(cart.encodedLength() > StoreBackendProtocol.MAX_BYTES_LENGTH);
+        byte[] signature = sign(cart.toByteArray());
+
+        assertEquals(VerifyOutcome.ACCEPTED, remoteStoreBackend.verifyWithOutcome(cart, signature));
+        assertEquals(VerifyOutcome.REPLAYED, remoteStoreBackend.verifyWithOutcome(cart, signature));
+    }
+
+    @Test
+    public void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+        Transaction first = new Transaction("user", 1, 1);
+        Transaction second = new Transaction("user", 1, 2);
+        byte[] requests = concat(verifyRequest(first, sign(first)),
+                verifyRequest(second, sign(first)), verifyRequest(first, sign(first)));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                server.getAddress().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(requests);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            assertEquals(VerifyOutcome.ACCEPTED, readVerifyResponse(in));
+            assertEquals(VerifyOutcome.BAD_SIGNATURE, readVerifyResponse(in));
+            assertEquals(VerifyOutcome.REPLAYED, readVerifyResponse(in));
+        }
+    }
+
+    private static byte[] verifyRequest(Transaction transaction, byte[] signature)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        StoreBackendProtocol.writeTransaction(out, transaction);
+        StoreBackendProtocol.writeBytes(out, signature);
+        String head = "POST " + StoreBackendProtocol.VERIFY_PATH + " HTTP/1.1\r\n"
+                + "Host: 127.0.0.1\r\n"
+                + "Content-Length: " + body.size() + "\r\n\r\n";
+        return concat(head.getBytes(StandardCharsets.US_ASCII), body.toByteArray());
+    }
+
+    private static VerifyOutcome readVerifyResponse(DataInputStream in) throws IOException {
+        String statusLine = readLine(in);
+        assertTrue(statusLine, statusLine.startsWith("HTTP/1.1 200"));
+        int contentLength = -1;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        assertEquals(1, contentLength);
+        return StoreBackendProtocol.readOutcome(in);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+}